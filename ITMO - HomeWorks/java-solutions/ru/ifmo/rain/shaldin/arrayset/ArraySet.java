@@ -1,13 +1,22 @@
 package ru.ifmo.rain.shaldin.arrayset;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
-public class ArraySet<E> extends AbstractSet<E> implements SortedSet<E> {
-    private final List<E> array;
+public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
+    private final ArrayView<E> array;
     private final Comparator<? super E> comparator;
 
+    private static final int GALLOP_RATIO = 32;
+
+    /**
+     * Default number of elements, from which construction sorts and removes duplicates in parallel.
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 1 << 16;
+
     public ArraySet() { // Сделать со всеми конструкторами через this(), убрать копипасту.
-        this(Collections.emptyList(), null);
+        this(new ArrayView<>(new Object[0]), null);
     }
 
     public ArraySet(Collection<? extends E> collection) {
@@ -15,20 +24,278 @@ public class ArraySet<E> extends AbstractSet<E> implements SortedSet<E> {
     }
 
     public ArraySet(Collection<? extends E> collection, Comparator<? super E> comparator) {
-        TreeSet<E> set = new TreeSet<>(comparator);
-        set.addAll(collection);
-        this.array = new ArrayList<>(set);
+        Object[] elements = collection.toArray();
+        this.array = sortedUnique(elements, elements.length, comparator,
+                isSorted(elements, elements.length, comparator), DEFAULT_PARALLEL_THRESHOLD);
         this.comparator = comparator;
     }
 
-    private ArraySet(List<E> collection, Comparator<? super E> comparator) {
+    private ArraySet(ArrayView<E> collection, Comparator<? super E> comparator) {
         this.array = collection;
         this.comparator = comparator;
     }
 
+    /**
+     * Creates set from array, which is sorted by comparator and has no duplicates, without copying.
+     */
+    static <E> ArraySet<E> ofSorted(Object[] elements, Comparator<? super E> comparator) {
+        return new ArraySet<>(new ArrayView<>(elements), comparator);
+    }
+
+    /**
+     * Builder of {@link ArraySet}. Elements added in sorted order are not sorted again,
+     * duplicates are removed in place, first of equal elements is kept.
+     */
+    public static class Builder<E> {
+        private final Comparator<? super E> comparator;
+        private Object[] elements = new Object[16];
+        private int size;
+        private boolean sorted = true;
+        private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+        public Builder() {
+            this(null);
+        }
+
+        public Builder(Comparator<? super E> comparator) {
+            this.comparator = comparator;
+        }
+
+        @SuppressWarnings("unchecked")
+        public Builder<E> add(E element) {
+            if (size == elements.length) {
+                elements = Arrays.copyOf(elements, 2 * size);
+            }
+            if (sorted && size > 0 && compare(comparator, (E) elements[size - 1], element) > 0) {
+                sorted = false;
+            }
+            elements[size++] = element;
+            return this;
+        }
+
+        public Builder<E> addAll(Collection<? extends E> collection) {
+            for (E element : collection) {
+                add(element);
+            }
+            return this;
+        }
+
+        /**
+         * Sets number of elements, from which {@link #build()} sorts and removes duplicates in parallel.
+         *
+         * @param parallelThreshold number of elements, {@link Integer#MAX_VALUE} to build sequentially
+         */
+        public Builder<E> setParallelThreshold(int parallelThreshold) {
+            if (parallelThreshold <= 0) {
+                throw new IllegalArgumentException("Threshold must be positive");
+            }
+            this.parallelThreshold = parallelThreshold;
+            return this;
+        }
+
+        public ArraySet<E> build() {
+            ArraySet<E> result = new ArraySet<>(sortedUnique(elements, size, comparator, sorted, parallelThreshold), comparator);
+            elements = new Object[16];
+            size = 0;
+            sorted = true;
+            return result;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> boolean isSorted(Object[] elements, int size, Comparator<? super E> comparator) {
+        for (int i = 1; i < size; i++) {
+            if (compare(comparator, (E) elements[i - 1], (E) elements[i]) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> ArrayView<E> sortedUnique(Object[] elements, int size, Comparator<? super E> comparator,
+                                                 boolean sorted, int parallelThreshold) {
+        if (size >= parallelThreshold) {
+            if (!sorted) {
+                Arrays.parallelSort((E[]) elements, 0, size, comparator);
+            }
+            return new ArrayView<>(parallelUnique(elements, size, comparator));
+        }
+        if (!sorted) {
+            Arrays.sort((E[]) elements, 0, size, comparator);
+        }
+        int unique = 0;
+        for (int i = 0; i < size; i++) {
+            if (unique == 0 || compare(comparator, (E) elements[unique - 1], (E) elements[i]) != 0) {
+                elements[unique++] = elements[i];
+            }
+        }
+        return new ArrayView<>(unique == elements.length ? elements : Arrays.copyOf(elements, unique));
+    }
+
+    /**
+     * Removes duplicates from sorted array: array is split into chunks, which are
+     * counted and copied in parallel, first of equal elements is kept.
+     */
+    @SuppressWarnings("unchecked")
+    private static <E> Object[] parallelUnique(Object[] elements, int size, Comparator<? super E> comparator) {
+        int chunkSize = Math.max(1, size / (4 * ForkJoinPool.getCommonPoolParallelism()));
+        int chunks = (size + chunkSize - 1) / chunkSize;
+        int[] starts = new int[chunks + 1];
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            int count = 0;
+            for (int i = chunk * chunkSize; i < Math.min(size, (chunk + 1) * chunkSize); i++) {
+                if (i == 0 || compare(comparator, (E) elements[i - 1], (E) elements[i]) != 0) {
+                    count++;
+                }
+            }
+            starts[chunk + 1] = count;
+        });
+        Arrays.parallelPrefix(starts, Integer::sum);
+        Object[] result = new Object[starts[chunks]];
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            int position = starts[chunk];
+            for (int i = chunk * chunkSize; i < Math.min(size, (chunk + 1) * chunkSize); i++) {
+                if (i == 0 || compare(comparator, (E) elements[i - 1], (E) elements[i]) != 0) {
+                    result[position++] = elements[i];
+                }
+            }
+        });
+        return result;
+    }
+
+    private static void checkComparators(ArraySet<?> first, ArraySet<?> second) {
+        if (!Objects.equals(first.comparator, second.comparator)) {
+            throw new IllegalArgumentException("Sets must have the same comparator.");
+        }
+    }
+
+    /**
+     * Returns union of two sets in {@code O(n + m)}. Of equal elements, element of {@code first} is kept.
+     *
+     * @throws IllegalArgumentException if sets have different comparators
+     */
+    public static <E> ArraySet<E> union(ArraySet<E> first, ArraySet<E> second) {
+        checkComparators(first, second);
+        ArrayView<E> a = first.array;
+        ArrayView<E> b = second.array;
+        Object[] result = new Object[a.size() + b.size()];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.size() && j < b.size()) {
+            int cmp = first.compare(a.get(i), b.get(j));
+            result[size++] = cmp <= 0 ? a.get(i) : b.get(j);
+            if (cmp <= 0) {
+                i++;
+            }
+            if (cmp >= 0) {
+                j++;
+            }
+        }
+        while (i < a.size()) {
+            result[size++] = a.get(i++);
+        }
+        while (j < b.size()) {
+            result[size++] = b.get(j++);
+        }
+        return new ArraySet<>(new ArrayView<>(size == result.length ? result : Arrays.copyOf(result, size)), first.comparator);
+    }
+
+    /**
+     * Returns intersection of two sets, elements are taken from {@code first}.
+     * If sizes differ a lot, elements of smaller set are searched in larger one by galloping,
+     * in {@code O(n log(m / n))}, otherwise sets are merged in {@code O(n + m)}.
+     *
+     * @throws IllegalArgumentException if sets have different comparators
+     */
+    public static <E> ArraySet<E> intersection(ArraySet<E> first, ArraySet<E> second) {
+        checkComparators(first, second);
+        ArrayView<E> a = first.array;
+        ArrayView<E> b = second.array;
+        boolean gallop = Math.min(a.size(), b.size()) * GALLOP_RATIO < Math.max(a.size(), b.size());
+        Object[] result = new Object[Math.min(a.size(), b.size())];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.size() && j < b.size()) {
+            if (gallop && a.size() < b.size()) {
+                j = gallop(b, j, a.get(i), first.comparator);
+            } else if (gallop) {
+                i = gallop(a, i, b.get(j), first.comparator);
+            }
+            if (i == a.size() || j == b.size()) {
+                break;
+            }
+            int cmp = first.compare(a.get(i), b.get(j));
+            if (cmp == 0) {
+                result[size++] = a.get(i);
+            }
+            if (cmp <= 0) {
+                i++;
+            }
+            if (cmp >= 0) {
+                j++;
+            }
+        }
+        return new ArraySet<>(new ArrayView<>(size == result.length ? result : Arrays.copyOf(result, size)), first.comparator);
+    }
+
+    /**
+     * Returns elements of {@code first}, which are not contained in {@code second}, in {@code O(n + m)}.
+     *
+     * @throws IllegalArgumentException if sets have different comparators
+     */
+    public static <E> ArraySet<E> difference(ArraySet<E> first, ArraySet<E> second) {
+        checkComparators(first, second);
+        ArrayView<E> a = first.array;
+        ArrayView<E> b = second.array;
+        Object[] result = new Object[a.size()];
+        int size = 0;
+        int j = 0;
+        for (int i = 0; i < a.size(); i++) {
+            while (j < b.size() && first.compare(b.get(j), a.get(i)) < 0) {
+                j++;
+            }
+            if (j == b.size() || first.compare(b.get(j), a.get(i)) != 0) {
+                result[size++] = a.get(i);
+            }
+        }
+        return new ArraySet<>(new ArrayView<>(size == result.length ? result : Arrays.copyOf(result, size)), first.comparator);
+    }
+
+    /**
+     * Returns first index not less than {@code from}, which element is not less than {@code key}.
+     */
+    private static <E> int gallop(ArrayView<E> list, int from, E key, Comparator<? super E> comparator) {
+        int step = 1;
+        int left = from;
+        int right = from;
+        while (right < list.size() && compare(comparator, list.get(right), key) < 0) {
+            left = right + 1;
+            right = from + step;
+            step *= 2;
+        }
+        right = Math.min(right, list.size());
+        while (left < right) {
+            int middle = (left + right) >>> 1;
+            if (compare(comparator, list.get(middle), key) < 0) {
+                left = middle + 1;
+            } else {
+                right = middle;
+            }
+        }
+        return left;
+    }
+
     @Override
     public Iterator<E> iterator() {
-        return Collections.unmodifiableList(array).iterator();
+        return array.iterator();
+    }
+
+    @Override
+    public Spliterator<E> spliterator() {
+        return new ArraySetSpliterator<>(array, 0, size(), comparator);
     }
 
     @Override
@@ -42,41 +309,134 @@ public class ArraySet<E> extends AbstractSet<E> implements SortedSet<E> {
     }
 
     @Override
-    public SortedSet<E> headSet(E toElement) {
-        int to = lowerBound(toElement);
-        return new ArraySet<E>(array.subList(0, to), comparator);
+    public ArraySet<E> headSet(E toElement) {
+        return headSet(toElement, false);
     }
 
     @Override
-    public SortedSet<E> tailSet(E fromElement) {
-        int from = lowerBound(fromElement);
-        return new ArraySet<E>(array.subList(from, size()), comparator);
+    public ArraySet<E> tailSet(E fromElement) {
+        return tailSet(fromElement, true);
     }
 
     @Override
-    public SortedSet<E> subSet(E fromElement, E toElement) {
-        if (!(fromElement instanceof Comparable) || !(toElement instanceof Comparable)) {
-            throw new IllegalArgumentException("Invalid comparator.");
-        }
-        if (comparator != null) {
-            if (comparator.compare(fromElement, toElement) > 0) {
-                throw new IllegalArgumentException("Left argument must be less than right.");
-            }
-        } else {
-            if (((Comparable) fromElement).compareTo(toElement) > 0) {
-                throw new IllegalArgumentException("Left argument must be less than right.");
-            }
+    public ArraySet<E> subSet(E fromElement, E toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public ArraySet<E> headSet(E toElement, boolean inclusive) {
+        return subList(0, inclusive ? floorIndex(toElement) : lowerIndex(toElement));
+    }
+
+    @Override
+    public ArraySet<E> tailSet(E fromElement, boolean inclusive) {
+        return subList(inclusive ? ceilingIndex(fromElement) : higherIndex(fromElement), size() - 1);
+    }
+
+    @Override
+    public ArraySet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+        if (compare(fromElement, toElement) > 0) {
+            throw new IllegalArgumentException("Left argument must be less than right.");
         }
+        return subList(fromInclusive ? ceilingIndex(fromElement) : higherIndex(fromElement),
+                toInclusive ? floorIndex(toElement) : lowerIndex(toElement));
+    }
+
+    private ArraySet<E> subList(int from, int to) {
+        return new ArraySet<>(array.subList(from, Math.max(from, to + 1)), comparator);
+    }
+
+    private int compare(E first, E second) {
+        return compare(comparator, first, second);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> int compare(Comparator<? super E> comparator, E first, E second) {
+        return comparator != null ? comparator.compare(first, second) : ((Comparable<? super E>) first).compareTo(second);
+    }
+
+    private int index(E element, int ifFound, int ifNotFound) {
+        int index = array.search(element, comparator);
+        return index >= 0 ? index + ifFound : ~index + ifNotFound;
+    }
+
+    private int lowerIndex(E element) {
+        return index(element, -1, -1);
+    }
+
+    private int floorIndex(E element) {
+        return index(element, 0, -1);
+    }
+
+    private int ceilingIndex(E element) {
+        return index(element, 0, 0);
+    }
+
+    private int higherIndex(E element) {
+        return index(element, 1, 0);
+    }
+
+    private E getOrNull(int index) {
+        return 0 <= index && index < size() ? array.get(index) : null;
+    }
 
-        return tailSet(fromElement).headSet(toElement);
+    @Override
+    public E lower(E e) {
+        return getOrNull(lowerIndex(e));
     }
 
-    private int lowerBound(E element) {
-        int from = Collections.binarySearch(array, element, comparator);
-        if (from < 0) {
-            from = ~from;
+    @Override
+    public E floor(E e) {
+        return getOrNull(floorIndex(e));
+    }
+
+    @Override
+    public E ceiling(E e) {
+        return getOrNull(ceilingIndex(e));
+    }
+
+    @Override
+    public E higher(E e) {
+        return getOrNull(higherIndex(e));
+    }
+
+    @Override
+    public E pollFirst() {
+        throw new UnsupportedOperationException("ArraySet is immutable.");
+    }
+
+    @Override
+    public E pollLast() {
+        throw new UnsupportedOperationException("ArraySet is immutable.");
+    }
+
+    static <E> Comparator<? super E> reverseOrder(Comparator<? super E> comparator) {
+        return comparator == Collections.reverseOrder() ? null : Collections.reverseOrder(comparator);
+    }
+
+    @Override
+    public ArraySet<E> descendingSet() {
+        return new ArraySet<>(array.reverse(), reverseOrder(comparator));
+    }
+
+    /**
+     * Returns the same set, which searches elements in cache-friendly {@link EytzingerLayout}.
+     * Layout is built once for whole backing array, in {@code O(n)} time and memory,
+     * and is shared by all views of returned set. Iteration order does not change.
+     * Useful for big sets, which do not fit in cache.
+     *
+     * @return set with Eytzinger search layout
+     */
+    public ArraySet<E> withEytzingerLayout() {
+        if (array.hasLayout()) {
+            return this;
         }
-        return from;
+        return new ArraySet<>(array.withLayout(array.isReversed() ? reverseOrder(comparator) : comparator), comparator);
+    }
+
+    @Override
+    public Iterator<E> descendingIterator() {
+        return descendingSet().iterator();
     }
 
     private void checkSize() throws NoSuchElementException {
@@ -99,7 +459,45 @@ public class ArraySet<E> extends AbstractSet<E> implements SortedSet<E> {
 
     @Override
     public boolean contains(Object o) {
-        int to = Collections.binarySearch(array, (E)o, comparator);
-        return to >= 0;
+        return array.contains((E)o, comparator);
+    }
+
+    /**
+     * Returns element by its index in order of set.
+     *
+     * @param index index of element
+     * @throws IndexOutOfBoundsException if index is out of range {@code [0, size())}
+     */
+    public E get(int index) {
+        Objects.checkIndex(index, size());
+        return array.get(index);
+    }
+
+    /**
+     * Returns number of elements less than {@code e}, which is index of {@code e}, if set contains it.
+     */
+    public int rank(E e) {
+        return ceilingIndex(e);
+    }
+
+    /**
+     * Returns number of elements from range {@code [fromElement, toElement)}, like {@code subSet(fromElement, toElement).size()}.
+     *
+     * @throws IllegalArgumentException if {@code fromElement} is greater than {@code toElement}
+     */
+    public int countInRange(E fromElement, E toElement) {
+        if (compare(fromElement, toElement) > 0) {
+            throw new IllegalArgumentException("Left argument must be less than right.");
+        }
+        return rank(toElement) - rank(fromElement);
+    }
+
+    /**
+     * Returns view of elements with indices from range {@code [fromIndex, toIndex)}.
+     *
+     * @throws IndexOutOfBoundsException if range is out of {@code [0, size())}
+     */
+    public ArraySet<E> slice(int fromIndex, int toIndex) {
+        return new ArraySet<>(array.subList(fromIndex, toIndex), comparator);
     }
 }
@@ -0,0 +1,206 @@
+package ru.ifmo.rain.shaldin.arrayset;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Function;
+
+/**
+ * Compares {@link ArraySet} with {@link TreeSet} and {@link ConcurrentSkipListSet}:
+ * construction from sorted, random and duplicate-heavy input, {@code contains},
+ * {@code headSet}/{@code tailSet}/{@code subSet} at view depths 1, 4 and 16, iteration and {@code first}/{@code last}.
+ * Usage: {@code ArraySetBenchmark [max_size]}, sizes are powers of ten from 10 to {@code max_size} (default {@code 10^6}).
+ * Sizes up to {@code 10^8} need heap of tens of gigabytes.
+ * <p>
+ * For every operation, prints time and bytes allocated per operation (per element for construction and iteration),
+ * and number and time of garbage collections during measurement.
+ */
+public class ArraySetBenchmark {
+    private static final int DEFAULT_MAX_SIZE = 1_000_000;
+    private static final int OPERATIONS = 1 << 18;
+    private static final int ROUNDS = 3;
+    private static final int[] DEPTHS = {1, 4, 16};
+
+    private static final Map<String, Function<Collection<Integer>, NavigableSet<Integer>>> SETS = new LinkedHashMap<>();
+
+    static {
+        SETS.put("ArraySet", ArraySet::new);
+        SETS.put("TreeSet", TreeSet::new);
+        SETS.put("ConcurrentSkipListSet", ConcurrentSkipListSet::new);
+    }
+
+    private static volatile long sink;
+
+    private interface Operation {
+        /**
+         * Runs operation given number of times and returns checksum of results.
+         */
+        long run(int times);
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static long[] collections() {
+        long count = 0;
+        long time = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, bean.getCollectionCount());
+            time += Math.max(0, bean.getCollectionTime());
+        }
+        return new long[]{count, time};
+    }
+
+    private static void measure(String name, String set, int size, int times, long unitsPerTime, Operation operation) {
+        sink += operation.run(Math.max(1, times / 10));
+        double bestTime = Double.MAX_VALUE;
+        double bytes = 0;
+        long[] gcBefore = collections();
+        for (int round = 0; round < ROUNDS; round++) {
+            long allocated = allocatedBytes();
+            long start = System.nanoTime();
+            sink += operation.run(times);
+            long time = System.nanoTime() - start;
+            bytes = (double) (allocatedBytes() - allocated) / times / unitsPerTime;
+            bestTime = Math.min(bestTime, (double) time / times / unitsPerTime);
+        }
+        long[] gcAfter = collections();
+        System.out.printf("%-18s %-22s %10d %12.1f ns/op %12.1f B/op %6d gc %6d ms%n",
+                name, set, size, bestTime, bytes, gcAfter[0] - gcBefore[0], gcAfter[1] - gcBefore[1]);
+    }
+
+    private static Integer[] randomQueries(Random random, int bound) {
+        Integer[] queries = new Integer[OPERATIONS];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = random.nextInt(bound);
+        }
+        return queries;
+    }
+
+    private static NavigableSet<Integer> narrow(NavigableSet<Integer> set, int depth, int size) {
+        int from = 0;
+        int to = 2 * size;
+        int step = size / (2 * depth);
+        for (int i = 0; i < depth; i++) {
+            from += step;
+            to -= step;
+            set = i % 3 == 0 ? set.tailSet(from, true) : i % 3 == 1 ? set.headSet(to, false) : set.subSet(from, true, to, false);
+        }
+        return set;
+    }
+
+    private static void benchmark(int size, Random random) {
+        List<Integer> sorted = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            sorted.add(2 * i);
+        }
+        List<Integer> shuffled = new ArrayList<>(sorted);
+        Collections.shuffle(shuffled, random);
+        List<Integer> duplicates = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            duplicates.add(2 * random.nextInt(Math.max(1, size / 10)));
+        }
+        Integer[] queries = randomQueries(random, 2 * size);
+        int builds = Math.max(1, 1_000_000 / size);
+        for (Map.Entry<String, Function<Collection<Integer>, NavigableSet<Integer>>> entry : SETS.entrySet()) {
+            String set = entry.getKey();
+            Function<Collection<Integer>, NavigableSet<Integer>> factory = entry.getValue();
+            measure("build-sorted", set, size, builds, size, times -> {
+                long sum = 0;
+                for (int i = 0; i < times; i++) {
+                    sum += factory.apply(sorted).size();
+                }
+                return sum;
+            });
+            measure("build-random", set, size, builds, size, times -> {
+                long sum = 0;
+                for (int i = 0; i < times; i++) {
+                    sum += factory.apply(shuffled).size();
+                }
+                return sum;
+            });
+            measure("build-dups", set, size, builds, size, times -> {
+                long sum = 0;
+                for (int i = 0; i < times; i++) {
+                    sum += factory.apply(duplicates).size();
+                }
+                return sum;
+            });
+            NavigableSet<Integer> instance = factory.apply(sorted);
+            measure("contains", set, size, OPERATIONS, 1, times -> {
+                long sum = 0;
+                for (int i = 0; i < times; i++) {
+                    if (instance.contains(queries[i % queries.length])) {
+                        sum++;
+                    }
+                }
+                return sum;
+            });
+            measure("headSet", set, size, OPERATIONS, 1, times -> {
+                long sum = 0;
+                for (int i = 0; i < times; i++) {
+                    sum += instance.headSet(queries[i % queries.length]).isEmpty() ? 0 : 1;
+                }
+                return sum;
+            });
+            measure("tailSet", set, size, OPERATIONS, 1, times -> {
+                long sum = 0;
+                for (int i = 0; i < times; i++) {
+                    sum += instance.tailSet(queries[i % queries.length]).isEmpty() ? 0 : 1;
+                }
+                return sum;
+            });
+            for (int depth : DEPTHS) {
+                measure("subSet-depth-" + depth, set, size, OPERATIONS / depth, 1, times -> {
+                    long sum = 0;
+                    for (int i = 0; i < times; i++) {
+                        if (narrow(instance, depth, size).contains(queries[i % queries.length])) {
+                            sum++;
+                        }
+                    }
+                    return sum;
+                });
+                NavigableSet<Integer> view = narrow(instance, depth, size);
+                measure("view-" + depth + "-contains", set, size, OPERATIONS, 1, times -> {
+                    long sum = 0;
+                    for (int i = 0; i < times; i++) {
+                        if (view.contains(queries[i % queries.length])) {
+                            sum++;
+                        }
+                    }
+                    return sum;
+                });
+            }
+            measure("iterate", set, size, builds, size, times -> {
+                long sum = 0;
+                for (int i = 0; i < times; i++) {
+                    for (Integer element : instance) {
+                        sum += element;
+                    }
+                }
+                return sum;
+            });
+            measure("first-last", set, size, OPERATIONS, 1, times -> {
+                long sum = 0;
+                for (int i = 0; i < times; i++) {
+                    sum += instance.first() + instance.last();
+                }
+                return sum;
+            });
+        }
+    }
+
+    public static void main(String[] args) {
+        int maxSize = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_MAX_SIZE;
+        Random random = new Random(239);
+        for (long size = 10; size <= maxSize; size *= 10) {
+            benchmark((int) size, random);
+        }
+        if (sink == 42) {
+            System.out.println();
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package ru.ifmo.rain.shaldin.arrayset;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Binary format of {@link ArraySet}.
+ * <p>
+ * Encoded set is: magic, number of elements (varint), blocks of 64 elements,
+ * skip index with offsets of blocks ({@code long} each) and offset of skip index ({@code long}).
+ * Numeric elements are written as varints: first element of block in full, others as difference with previous one.
+ * Other elements are always written in full as length-prefixed bytes.
+ * <p>
+ * Sets are encoded and decoded by streams, decoded set is built without sorting.
+ * Decoding reads exactly one encoded set, so several sets may be written to one stream one after another.
+ * {@link #contains(ByteBuffer, Object)} searches block by skip index and decodes only this block.
+ */
+public abstract class ArraySetCodec<E> {
+    private static final int MAGIC = 0x41534331;
+    private static final int BLOCK_SIZE = 64;
+
+    /**
+     * Codec of {@code long} elements in natural order.
+     */
+    public static final ArraySetCodec<Long> LONG = new NumericCodec<>(Long::longValue, Long::valueOf);
+
+    /**
+     * Codec of {@code int} elements in natural order.
+     */
+    public static final ArraySetCodec<Integer> INT = new NumericCodec<>(Integer::longValue, value -> (int) value);
+
+    /**
+     * Codec of strings in natural order, which are written in UTF-8.
+     */
+    public static final ArraySetCodec<String> STRING = bytes(
+            s -> s.getBytes(StandardCharsets.UTF_8), bytes -> new String(bytes, StandardCharsets.UTF_8), null);
+
+    private final Comparator<? super E> comparator;
+
+    private ArraySetCodec(Comparator<? super E> comparator) {
+        this.comparator = comparator;
+    }
+
+    /**
+     * Returns codec, which writes elements as length-prefixed bytes.
+     *
+     * @param toBytes    encoder of element
+     * @param fromBytes  decoder of element
+     * @param comparator order of elements, {@code null} for natural order
+     */
+    public static <E> ArraySetCodec<E> bytes(Function<? super E, byte[]> toBytes, Function<byte[], ? extends E> fromBytes,
+                                             Comparator<? super E> comparator) {
+        return new BytesCodec<>(toBytes, fromBytes, comparator);
+    }
+
+    /**
+     * Writes element, {@code previous} is {@code null} for first element of block.
+     */
+    abstract void write(E element, E previous, DataOutput out) throws IOException;
+
+    /**
+     * Reads element, {@code previous} is {@code null} for first element of block.
+     */
+    abstract E read(E previous, DataInput in) throws IOException;
+
+    @SuppressWarnings("unchecked")
+    int compare(E first, E second) {
+        return comparator != null ? comparator.compare(first, second) : ((Comparable<? super E>) first).compareTo(second);
+    }
+
+    /**
+     * Writes elements to stream.
+     *
+     * @param elements elements in increasing order of codec
+     * @param out      stream to write, it is not closed
+     * @throws IOException              if stream cannot be written
+     * @throws IllegalArgumentException if elements are not in increasing order
+     */
+    public void encode(Collection<? extends E> elements, OutputStream out) throws IOException {
+        CountingOutputStream counter = new CountingOutputStream(out);
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(counter));
+        int size = elements.size();
+        long[] offsets = new long[(size + BLOCK_SIZE - 1) / BLOCK_SIZE];
+        data.writeInt(MAGIC);
+        writeVarLong(data, size);
+        E previous = null;
+        int index = 0;
+        for (E element : elements) {
+            if (index == size) {
+                throw new IllegalArgumentException("Collection has changed");
+            }
+            if (index > 0 && compare(previous, element) >= 0) {
+                throw new IllegalArgumentException("Elements are not in increasing order");
+            }
+            if (index % BLOCK_SIZE == 0) {
+                data.flush();
+                offsets[index / BLOCK_SIZE] = counter.count;
+                write(element, null, data);
+            } else {
+                write(element, previous, data);
+            }
+            previous = element;
+            index++;
+        }
+        if (index != size) {
+            throw new IllegalArgumentException("Collection has changed");
+        }
+        data.flush();
+        long indexOffset = counter.count;
+        for (long offset : offsets) {
+            data.writeLong(offset);
+        }
+        data.writeLong(indexOffset);
+        data.flush();
+    }
+
+    /**
+     * Reads set, written by {@link #encode}.
+     * Stream is read up to the end of encoded set and is not buffered, so caller should buffer it if needed.
+     *
+     * @param in stream to read, it is not closed
+     * @throws IOException if stream cannot be read or has invalid format
+     */
+    public ArraySet<E> decode(InputStream in) throws IOException {
+        CountingInputStream counter = new CountingInputStream(in);
+        DataInputStream data = new DataInputStream(counter);
+        long size = readHeader(data);
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IOException("Too many elements: " + size);
+        }
+        Object[] elements = new Object[(int) size];
+        long[] offsets = new long[(elements.length + BLOCK_SIZE - 1) / BLOCK_SIZE];
+        E previous = null;
+        for (int i = 0; i < elements.length; i++) {
+            E current;
+            if (i % BLOCK_SIZE == 0) {
+                offsets[i / BLOCK_SIZE] = counter.count;
+                current = read(null, data);
+            } else {
+                current = read(previous, data);
+            }
+            if (i > 0 && compare(previous, current) >= 0) {
+                throw new IOException("Elements are not in increasing order");
+            }
+            elements[i] = previous = current;
+        }
+        long indexOffset = counter.count;
+        for (long offset : offsets) {
+            if (data.readLong() != offset) {
+                throw new IOException("Invalid skip index of set");
+            }
+        }
+        if (data.readLong() != indexOffset) {
+            throw new IOException("Invalid skip index of set");
+        }
+        return ArraySet.ofSorted(elements, comparator);
+    }
+
+    private static long readHeader(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Invalid format of set");
+        }
+        return readVarLong(in);
+    }
+
+    /**
+     * Checks, whether encoded set contains element, without decoding whole set.
+     *
+     * Encoded set must fit in one buffer, so it should be less than 2 GB; larger sets may be read by {@link #decode}.
+     *
+     * @param encoded bytes, written by {@link #encode}, from position to limit; position is not changed
+     * @param element element to find
+     * @throws IOException if set has invalid format
+     */
+    public boolean contains(ByteBuffer encoded, E element) throws IOException {
+        ByteBuffer buffer = encoded.slice();
+        long size = readHeader(new DataInputStream(new BufferInputStream(buffer, 0)));
+        if (size < 0 || size > buffer.limit()) {
+            throw new IOException("Invalid size of set: " + size);
+        }
+        int blocks = (int) ((size + BLOCK_SIZE - 1) / BLOCK_SIZE);
+        long indexOffset = buffer.limit() < Long.BYTES ? -1 : buffer.getLong(buffer.limit() - Long.BYTES);
+        if (indexOffset < 0 || indexOffset + (long) (blocks + 1) * Long.BYTES != buffer.limit()) {
+            throw new IOException("Invalid skip index of set");
+        }
+        int index = (int) indexOffset;
+        int left = 0;
+        int right = blocks - 1;
+        while (left < right) {
+            int middle = (left + right + 1) >>> 1;
+            if (compare(read(null, block(buffer, index, middle)), element) <= 0) {
+                left = middle;
+            } else {
+                right = middle - 1;
+            }
+        }
+        if (blocks == 0) {
+            return false;
+        }
+        DataInput in = block(buffer, index, left);
+        E current = null;
+        for (long i = (long) left * BLOCK_SIZE; i < Math.min(size, (long) (left + 1) * BLOCK_SIZE); i++) {
+            current = read(current, in);
+            int cmp = compare(current, element);
+            if (cmp >= 0) {
+                return cmp == 0;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns stream from start of block. Skip index must be checked to lie within buffer.
+     */
+    private static DataInput block(ByteBuffer buffer, int index, int block) throws IOException {
+        long offset = buffer.getLong((int) (index + (long) block * Long.BYTES));
+        if (offset < 0 || offset >= index) {
+            throw new IOException("Invalid offset of block " + block + ": " + offset);
+        }
+        return new DataInputStream(new BufferInputStream(buffer, (int) offset));
+    }
+
+    private static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7fL) != 0) {
+            out.writeByte((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInput in) throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            int b = in.readUnsignedByte();
+            result |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("Too long varint");
+    }
+
+    private static class NumericCodec<E> extends ArraySetCodec<E> {
+        private final ToLongFunction<? super E> toLong;
+        private final LongFunction<? extends E> fromLong;
+
+        NumericCodec(ToLongFunction<? super E> toLong, LongFunction<? extends E> fromLong) {
+            super(null);
+            this.toLong = toLong;
+            this.fromLong = fromLong;
+        }
+
+        @Override
+        void write(E element, E previous, DataOutput out) throws IOException {
+            long value = toLong.applyAsLong(element);
+            if (previous == null) {
+                writeVarLong(out, value << 1 ^ value >> 63);
+            } else {
+                writeVarLong(out, value - toLong.applyAsLong(previous) - 1);
+            }
+        }
+
+        @Override
+        E read(E previous, DataInput in) throws IOException {
+            long value = readVarLong(in);
+            if (previous == null) {
+                return fromLong.apply(value >>> 1 ^ -(value & 1));
+            }
+            return fromLong.apply(toLong.applyAsLong(previous) + value + 1);
+        }
+    }
+
+    private static class BytesCodec<E> extends ArraySetCodec<E> {
+        private final Function<? super E, byte[]> toBytes;
+        private final Function<byte[], ? extends E> fromBytes;
+
+        BytesCodec(Function<? super E, byte[]> toBytes, Function<byte[], ? extends E> fromBytes, Comparator<? super E> comparator) {
+            super(comparator);
+            this.toBytes = toBytes;
+            this.fromBytes = fromBytes;
+        }
+
+        @Override
+        void write(E element, E previous, DataOutput out) throws IOException {
+            byte[] bytes = toBytes.apply(element);
+            writeVarLong(out, bytes.length);
+            out.write(bytes);
+        }
+
+        @Override
+        E read(E previous, DataInput in) throws IOException {
+            long length = readVarLong(in);
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("Too long element");
+            }
+            byte[] bytes = new byte[(int) length];
+            in.readFully(bytes);
+            return fromBytes.apply(bytes);
+        }
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = in.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+    }
+
+    private static class BufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        BufferInputStream(ByteBuffer buffer, int offset) {
+            this.buffer = buffer.duplicate().position(offset);
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            len = Math.min(len, buffer.remaining());
+            buffer.get(b, off, len);
+            return len;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package ru.ifmo.rain.shaldin.arrayset;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Spliterator of sorted list without duplicates, which is split by halves of index range.
+ * Reports exact sizes and order of elements, so parallel streams split evenly and do not sort again.
+ */
+class ArraySetSpliterator<E> implements Spliterator<E> {
+    private final List<E> list;
+    private final Comparator<? super E> comparator;
+    private int index;
+    private final int end;
+
+    /**
+     * Constructor for {@link ArraySetSpliterator}
+     *
+     * @param list       sorted random access list without duplicates
+     * @param from       first index, inclusive
+     * @param to         last index, exclusive
+     * @param comparator order of list, {@code null} for natural order
+     */
+    ArraySetSpliterator(List<E> list, int from, int to, Comparator<? super E> comparator) {
+        this.list = list;
+        this.index = from;
+        this.end = to;
+        this.comparator = comparator;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super E> action) {
+        if (index >= end) {
+            return false;
+        }
+        action.accept(list.get(index++));
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super E> action) {
+        for (; index < end; index++) {
+            action.accept(list.get(index));
+        }
+    }
+
+    @Override
+    public Spliterator<E> trySplit() {
+        int middle = (index + end) >>> 1;
+        if (middle <= index) {
+            return null;
+        }
+        Spliterator<E> prefix = new ArraySetSpliterator<>(list, index, middle, comparator);
+        index = middle;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return end - index;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | SORTED | DISTINCT | SIZED | SUBSIZED | IMMUTABLE;
+    }
+
+    @Override
+    public Comparator<? super E> getComparator() {
+        return comparator;
+    }
+}
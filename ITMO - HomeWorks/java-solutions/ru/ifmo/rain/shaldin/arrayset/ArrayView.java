@@ -0,0 +1,105 @@
+package ru.ifmo.rain.shaldin.arrayset;
+
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.RandomAccess;
+
+/**
+ * Unmodifiable view of range {@code [from, to)} of array, in direct or reversed order.
+ * Sub lists and reversed views refer to the same array, so views of any depth have no extra indirection.
+ */
+class ArrayView<E> extends AbstractList<E> implements RandomAccess {
+    private final Object[] elements;
+    private final int from;
+    private final int to;
+    private final boolean reversed;
+    private final EytzingerLayout<E> layout;
+
+    ArrayView(Object[] elements) {
+        this(elements, 0, elements.length, false, null);
+    }
+
+    private ArrayView(Object[] elements, int from, int to, boolean reversed, EytzingerLayout<E> layout) {
+        this.elements = elements;
+        this.from = from;
+        this.to = to;
+        this.reversed = reversed;
+        this.layout = layout;
+    }
+
+    ArrayView<E> reverse() {
+        return new ArrayView<>(elements, from, to, !reversed, layout);
+    }
+
+    /**
+     * Returns the same view, which searches in {@link EytzingerLayout} of whole array.
+     *
+     * @param comparator comparator of array in direct order
+     */
+    ArrayView<E> withLayout(Comparator<? super E> comparator) {
+        return new ArrayView<>(elements, from, to, reversed, layout != null ? layout : new EytzingerLayout<>(elements, comparator));
+    }
+
+    boolean isReversed() {
+        return reversed;
+    }
+
+    boolean hasLayout() {
+        return layout != null;
+    }
+
+    /**
+     * Returns whether view contains key.
+     *
+     * @param comparator comparator of view, used if view has no layout
+     */
+    boolean contains(E key, Comparator<? super E> comparator) {
+        if (layout != null && from == 0 && to == elements.length) {
+            return layout.contains(key);
+        }
+        return search(key, comparator) >= 0;
+    }
+
+    /**
+     * Searches for key like {@link Collections#binarySearch(java.util.List, Object, Comparator)}.
+     *
+     * @param comparator comparator of view, used if view has no layout
+     */
+    int search(E key, Comparator<? super E> comparator) {
+        if (layout == null) {
+            return Collections.binarySearch(this, key, comparator);
+        }
+        int lower = layout.lowerBound(key);
+        boolean found = lower < 0;
+        if (found) {
+            lower = ~lower;
+        }
+        if (found && from <= lower && lower < to) {
+            return reversed ? to - 1 - lower : lower - from;
+        }
+        int bound = Math.min(to, Math.max(from, lower));
+        return ~(reversed ? to - bound : bound - from);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        return (E) elements[reversed ? to - 1 - index : from + index];
+    }
+
+    @Override
+    public int size() {
+        return to - from;
+    }
+
+    @Override
+    public ArrayView<E> subList(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > size() || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("Invalid range [" + fromIndex + ", " + toIndex + ") of " + size());
+        }
+        return reversed
+                ? new ArrayView<>(elements, to - toIndex, to - fromIndex, true, layout)
+                : new ArrayView<>(elements, from + fromIndex, from + toIndex, false, layout);
+    }
+}
@@ -0,0 +1,721 @@
+package ru.ifmo.rain.shaldin.arrayset;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Mutable sorted set, stored as list of sorted arrays (chunks) of bounded size.
+ * Element is found by binary search on first elements of chunks and then in chunk.
+ * Insertion and removal shift elements of one chunk only; full chunk is split in halves,
+ * chunk with less than quarter of capacity borrows elements from its neighbour or is merged with it.
+ * Capacity of chunks is kept between square root of size and its double, so both chunk and list of chunks
+ * have {@code O(sqrt(n))} elements, and insertion and removal take amortized {@code O(sqrt(n))} time.
+ * When size grows four times or shrinks sixteen times, chunks are rebuilt with new capacity.
+ * Arrays of chunks are sized by their contents and grow on demand,
+ * so set keeps at most about one and a half references per element and a few words per chunk.
+ * Views and iterators are backed by the set, iterators are fail-fast.
+ */
+public class ChunkedArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
+    private static final int MIN_CHUNK_CAPACITY = 64;
+
+    private static class Chunk {
+        private Object[] elements;
+        private int size;
+
+        Chunk(Object[] elements, int size) {
+            this.elements = elements;
+            this.size = size;
+        }
+    }
+
+    private final List<Chunk> chunks = new ArrayList<>();
+    private final Comparator<? super E> comparator;
+    private int size;
+    private int modCount;
+    private int capacity = MIN_CHUNK_CAPACITY;
+
+    public ChunkedArraySet() {
+        this((Comparator<? super E>) null);
+    }
+
+    public ChunkedArraySet(Comparator<? super E> comparator) {
+        this.comparator = comparator;
+    }
+
+    public ChunkedArraySet(Collection<? extends E> collection) {
+        this(collection, null);
+    }
+
+    public ChunkedArraySet(Collection<? extends E> collection, Comparator<? super E> comparator) {
+        this(comparator);
+        Object[] elements = new ArraySet<>(collection, comparator).toArray();
+        size = elements.length;
+        capacity = capacityFor(size);
+        load(elements);
+    }
+
+    /**
+     * Returns capacity of chunks for set of given size: power of two between square root of size and its double.
+     */
+    private static int capacityFor(int size) {
+        return Math.max(MIN_CHUNK_CAPACITY, Integer.highestOneBit((int) Math.sqrt(size)) * 2);
+    }
+
+    /**
+     * Splits sorted elements evenly into chunks, which are filled to three quarters of capacity.
+     */
+    private void load(Object[] elements) {
+        chunks.clear();
+        int n = elements.length;
+        int count = (n + capacity * 3 / 4 - 1) / (capacity * 3 / 4);
+        for (int i = 0, from = 0; i < count; i++) {
+            int to = from + n / count + (i < n % count ? 1 : 0);
+            chunks.add(new Chunk(Arrays.copyOfRange(elements, from, to), to - from));
+            from = to;
+        }
+    }
+
+    /**
+     * Rebuilds chunks, if capacity became too far from square root of size.
+     */
+    private void resize() {
+        int target = capacityFor(size);
+        if (target >= 2 * capacity || 4 * target <= capacity) {
+            Object[] elements = new Object[size];
+            int position = 0;
+            for (Chunk chunk : chunks) {
+                System.arraycopy(chunk.elements, 0, elements, position, chunk.size);
+                position += chunk.size;
+            }
+            capacity = target;
+            load(elements);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(E first, E second) {
+        return comparator != null ? comparator.compare(first, second) : ((Comparable<? super E>) first).compareTo(second);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> E element(Chunk chunk, int index) {
+        return (E) chunk.elements[index];
+    }
+
+    /**
+     * Returns index of last chunk, which first element is not greater than {@code e}, or {@code 0}.
+     * Set must not be empty.
+     */
+    private int chunkIndex(E e) {
+        int left = 0;
+        int right = chunks.size() - 1;
+        while (left < right) {
+            int middle = (left + right + 1) >>> 1;
+            if (compare(element(chunks.get(middle), 0), e) <= 0) {
+                left = middle;
+            } else {
+                right = middle - 1;
+            }
+        }
+        return left;
+    }
+
+    /**
+     * Searches for {@code e} in chunk like {@link Arrays#binarySearch(Object[], int, int, Object, Comparator)}.
+     */
+    private int search(Chunk chunk, E e) {
+        int left = 0;
+        int right = chunk.size - 1;
+        while (left <= right) {
+            int middle = (left + right) >>> 1;
+            int cmp = compare(element(chunk, middle), e);
+            if (cmp < 0) {
+                left = middle + 1;
+            } else if (cmp > 0) {
+                right = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return ~left;
+    }
+
+    private E firstElement() {
+        return chunks.isEmpty() ? null : element(chunks.get(0), 0);
+    }
+
+    private E lastElement() {
+        if (chunks.isEmpty()) {
+            return null;
+        }
+        Chunk chunk = chunks.get(chunks.size() - 1);
+        return element(chunk, chunk.size - 1);
+    }
+
+    private E ceilingElement(E e, boolean inclusive) {
+        if (chunks.isEmpty()) {
+            return null;
+        }
+        int chunkIndex = chunkIndex(e);
+        Chunk chunk = chunks.get(chunkIndex);
+        int index = search(chunk, e);
+        index = index >= 0 ? (inclusive ? index : index + 1) : ~index;
+        if (index < chunk.size) {
+            return element(chunk, index);
+        }
+        return chunkIndex + 1 < chunks.size() ? element(chunks.get(chunkIndex + 1), 0) : null;
+    }
+
+    private E floorElement(E e, boolean inclusive) {
+        if (chunks.isEmpty()) {
+            return null;
+        }
+        int chunkIndex = chunkIndex(e);
+        Chunk chunk = chunks.get(chunkIndex);
+        int index = search(chunk, e);
+        index = index >= 0 ? (inclusive ? index : index - 1) : ~index - 1;
+        if (index >= 0) {
+            return element(chunk, index);
+        }
+        if (chunkIndex == 0) {
+            return null;
+        }
+        Chunk previous = chunks.get(chunkIndex - 1);
+        return element(previous, previous.size - 1);
+    }
+
+    @Override
+    public boolean add(E e) {
+        if (chunks.isEmpty()) {
+            compare(e, e);
+            Chunk chunk = new Chunk(new Object[0], 0);
+            insert(chunk, 0, e);
+            chunks.add(chunk);
+            size++;
+            modCount++;
+            return true;
+        }
+        int chunkIndex = chunkIndex(e);
+        Chunk chunk = chunks.get(chunkIndex);
+        int index = search(chunk, e);
+        if (index >= 0) {
+            return false;
+        }
+        index = ~index;
+        if (chunk.size == capacity) {
+            int half = capacity / 2;
+            Chunk next = new Chunk(Arrays.copyOfRange(chunk.elements, half, capacity), capacity - half);
+            chunk.elements = Arrays.copyOf(chunk.elements, half);
+            chunk.size = half;
+            chunks.add(chunkIndex + 1, next);
+            if (index > half) {
+                chunk = next;
+                index -= half;
+            }
+        }
+        insert(chunk, index, e);
+        size++;
+        modCount++;
+        resize();
+        return true;
+    }
+
+    /**
+     * Inserts element to chunk, growing its array by half, but not above capacity.
+     */
+    private void insert(Chunk chunk, int index, Object e) {
+        if (chunk.size == chunk.elements.length) {
+            chunk.elements = Arrays.copyOf(chunk.elements, Math.min(capacity, chunk.size + (chunk.size >> 1) + 1));
+        }
+        System.arraycopy(chunk.elements, index, chunk.elements, index + 1, chunk.size - index);
+        chunk.elements[index] = e;
+        chunk.size++;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean remove(Object o) {
+        if (chunks.isEmpty()) {
+            return false;
+        }
+        int chunkIndex = chunkIndex((E) o);
+        int index = search(chunks.get(chunkIndex), (E) o);
+        if (index < 0) {
+            return false;
+        }
+        removeAt(chunkIndex, index);
+        return true;
+    }
+
+    private void removeAt(int chunkIndex, int index) {
+        Chunk chunk = chunks.get(chunkIndex);
+        System.arraycopy(chunk.elements, index + 1, chunk.elements, index, chunk.size - index - 1);
+        chunk.elements[--chunk.size] = null;
+        size--;
+        modCount++;
+        if (chunk.size == 0) {
+            chunks.remove(chunkIndex);
+        } else if (chunk.size < capacity / 4 && chunks.size() > 1) {
+            rebalance(chunkIndex + 1 < chunks.size() ? chunkIndex : chunkIndex - 1);
+        } else if (chunk.size * 3 < chunk.elements.length * 2) {
+            chunk.elements = Arrays.copyOf(chunk.elements, chunk.size + (chunk.size >> 2) + 1);
+        }
+        resize();
+    }
+
+    /**
+     * Merges chunk with the next one, if they fit in three quarters of capacity,
+     * otherwise moves elements between them to make them equal.
+     */
+    private void rebalance(int chunkIndex) {
+        Chunk first = chunks.get(chunkIndex);
+        Chunk second = chunks.get(chunkIndex + 1);
+        int total = first.size + second.size;
+        Object[] elements = Arrays.copyOf(first.elements, total);
+        System.arraycopy(second.elements, 0, elements, first.size, second.size);
+        if (total <= capacity * 3 / 4) {
+            first.elements = elements;
+            first.size = total;
+            chunks.remove(chunkIndex + 1);
+        } else {
+            int half = total / 2;
+            first.elements = Arrays.copyOf(elements, half);
+            first.size = half;
+            second.elements = Arrays.copyOfRange(elements, half, total);
+            second.size = total - half;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean contains(Object o) {
+        return !chunks.isEmpty() && search(chunks.get(chunkIndex((E) o)), (E) o) >= 0;
+    }
+
+    @Override
+    public void clear() {
+        chunks.clear();
+        size = 0;
+        capacity = MIN_CHUNK_CAPACITY;
+        modCount++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+        return comparator;
+    }
+
+    private static <E> E checkElement(E element) throws NoSuchElementException {
+        if (element == null) {
+            throw new NoSuchElementException("Collection is empty.");
+        }
+        return element;
+    }
+
+    @Override
+    public E first() throws NoSuchElementException {
+        return checkElement(firstElement());
+    }
+
+    @Override
+    public E last() throws NoSuchElementException {
+        return checkElement(lastElement());
+    }
+
+    @Override
+    public E lower(E e) {
+        return floorElement(e, false);
+    }
+
+    @Override
+    public E floor(E e) {
+        return floorElement(e, true);
+    }
+
+    @Override
+    public E ceiling(E e) {
+        return ceilingElement(e, true);
+    }
+
+    @Override
+    public E higher(E e) {
+        return ceilingElement(e, false);
+    }
+
+    @Override
+    public E pollFirst() {
+        if (chunks.isEmpty()) {
+            return null;
+        }
+        E element = firstElement();
+        removeAt(0, 0);
+        return element;
+    }
+
+    @Override
+    public E pollLast() {
+        if (chunks.isEmpty()) {
+            return null;
+        }
+        E element = lastElement();
+        removeAt(chunks.size() - 1, chunks.get(chunks.size() - 1).size - 1);
+        return element;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new ChunkIterator(firstElement(), false, e -> true);
+    }
+
+    @Override
+    public Iterator<E> descendingIterator() {
+        return new ChunkIterator(lastElement(), true, e -> true);
+    }
+
+    private SubSet all(boolean descending) {
+        return new SubSet(true, null, false, true, null, false, descending);
+    }
+
+    @Override
+    public NavigableSet<E> descendingSet() {
+        return all(true);
+    }
+
+    @Override
+    public NavigableSet<E> headSet(E toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public NavigableSet<E> tailSet(E fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    @Override
+    public NavigableSet<E> subSet(E fromElement, E toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+        return all(false).headSet(toElement, inclusive);
+    }
+
+    @Override
+    public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+        return all(false).tailSet(fromElement, inclusive);
+    }
+
+    @Override
+    public NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+        return all(false).subSet(fromElement, fromInclusive, toElement, toInclusive);
+    }
+
+    /**
+     * Iterator from given element in direct or descending order, while elements satisfy predicate.
+     */
+    private class ChunkIterator implements Iterator<E> {
+        private final boolean descending;
+        private final Predicate<E> inRange;
+        private int chunkIndex;
+        private int index;
+        private E last;
+        private boolean canRemove;
+        private int expectedModCount = modCount;
+
+        ChunkIterator(E start, boolean descending, Predicate<E> inRange) {
+            this.descending = descending;
+            this.inRange = inRange;
+            seek(start);
+        }
+
+        private void seek(E element) {
+            if (element == null) {
+                chunkIndex = descending ? -1 : chunks.size();
+            } else {
+                chunkIndex = chunkIndex(element);
+                index = search(chunks.get(chunkIndex), element);
+            }
+        }
+
+        private boolean hasElement() {
+            return 0 <= chunkIndex && chunkIndex < chunks.size();
+        }
+
+        private void checkModCount() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            checkModCount();
+            return hasElement() && inRange.test(element(chunks.get(chunkIndex), index));
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            last = element(chunks.get(chunkIndex), index);
+            canRemove = true;
+            if (descending) {
+                if (--index < 0 && --chunkIndex >= 0) {
+                    index = chunks.get(chunkIndex).size - 1;
+                }
+            } else if (++index == chunks.get(chunkIndex).size) {
+                chunkIndex++;
+                index = 0;
+            }
+            return last;
+        }
+
+        @Override
+        public void remove() {
+            if (!canRemove) {
+                throw new IllegalStateException();
+            }
+            checkModCount();
+            E next = hasElement() ? element(chunks.get(chunkIndex), index) : null;
+            ChunkedArraySet.this.remove(last);
+            expectedModCount = modCount;
+            canRemove = false;
+            seek(next);
+        }
+    }
+
+    /**
+     * View of elements from given range in direct or descending order.
+     * Bounds are stored in direct order.
+     */
+    private class SubSet extends AbstractSet<E> implements NavigableSet<E> {
+        private final boolean fromStart;
+        private final E low;
+        private final boolean lowInclusive;
+        private final boolean toEnd;
+        private final E high;
+        private final boolean highInclusive;
+        private final boolean descending;
+
+        SubSet(boolean fromStart, E low, boolean lowInclusive, boolean toEnd, E high, boolean highInclusive, boolean descending) {
+            this.fromStart = fromStart;
+            this.low = low;
+            this.lowInclusive = lowInclusive;
+            this.toEnd = toEnd;
+            this.high = high;
+            this.highInclusive = highInclusive;
+            this.descending = descending;
+        }
+
+        private boolean tooLow(E e) {
+            if (fromStart) {
+                return false;
+            }
+            int cmp = compare(e, low);
+            return cmp < 0 || cmp == 0 && !lowInclusive;
+        }
+
+        private boolean tooHigh(E e) {
+            if (toEnd) {
+                return false;
+            }
+            int cmp = compare(e, high);
+            return cmp > 0 || cmp == 0 && !highInclusive;
+        }
+
+        private boolean inRange(E e) {
+            return !tooLow(e) && !tooHigh(e);
+        }
+
+        private boolean inRange(E e, boolean inclusive) {
+            if (inclusive) {
+                return inRange(e);
+            }
+            return (fromStart || compare(e, low) >= 0) && (toEnd || compare(e, high) <= 0);
+        }
+
+        private E lowest() {
+            E e = fromStart ? firstElement() : ceilingElement(low, lowInclusive);
+            return e == null || tooHigh(e) ? null : e;
+        }
+
+        private E highest() {
+            E e = toEnd ? lastElement() : floorElement(high, highInclusive);
+            return e == null || tooLow(e) ? null : e;
+        }
+
+        private E ascendingCeiling(E e, boolean inclusive) {
+            if (tooLow(e)) {
+                return lowest();
+            }
+            E result = ceilingElement(e, inclusive);
+            return result == null || tooHigh(result) ? null : result;
+        }
+
+        private E ascendingFloor(E e, boolean inclusive) {
+            if (tooHigh(e)) {
+                return highest();
+            }
+            E result = floorElement(e, inclusive);
+            return result == null || tooLow(result) ? null : result;
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            return descending ? new ChunkIterator(highest(), true, e -> !tooLow(e)) : new ChunkIterator(lowest(), false, e -> !tooHigh(e));
+        }
+
+        @Override
+        public Iterator<E> descendingIterator() {
+            return descendingSet().iterator();
+        }
+
+        @Override
+        public int size() {
+            int size = 0;
+            for (Iterator<E> iterator = iterator(); iterator.hasNext(); iterator.next()) {
+                size++;
+            }
+            return size;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return lowest() == null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean contains(Object o) {
+            return inRange((E) o) && ChunkedArraySet.this.contains(o);
+        }
+
+        @Override
+        public boolean add(E e) {
+            if (!inRange(e)) {
+                throw new IllegalArgumentException("Element out of range.");
+            }
+            return ChunkedArraySet.this.add(e);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean remove(Object o) {
+            return inRange((E) o) && ChunkedArraySet.this.remove(o);
+        }
+
+        @Override
+        public Comparator<? super E> comparator() {
+            return descending ? ArraySet.reverseOrder(comparator) : comparator;
+        }
+
+        @Override
+        public E first() throws NoSuchElementException {
+            return checkElement(descending ? highest() : lowest());
+        }
+
+        @Override
+        public E last() throws NoSuchElementException {
+            return checkElement(descending ? lowest() : highest());
+        }
+
+        @Override
+        public E lower(E e) {
+            return descending ? ascendingCeiling(e, false) : ascendingFloor(e, false);
+        }
+
+        @Override
+        public E floor(E e) {
+            return descending ? ascendingCeiling(e, true) : ascendingFloor(e, true);
+        }
+
+        @Override
+        public E ceiling(E e) {
+            return descending ? ascendingFloor(e, true) : ascendingCeiling(e, true);
+        }
+
+        @Override
+        public E higher(E e) {
+            return descending ? ascendingFloor(e, false) : ascendingCeiling(e, false);
+        }
+
+        @Override
+        public E pollFirst() {
+            E e = descending ? highest() : lowest();
+            if (e != null) {
+                ChunkedArraySet.this.remove(e);
+            }
+            return e;
+        }
+
+        @Override
+        public E pollLast() {
+            E e = descending ? lowest() : highest();
+            if (e != null) {
+                ChunkedArraySet.this.remove(e);
+            }
+            return e;
+        }
+
+        @Override
+        public NavigableSet<E> descendingSet() {
+            return new SubSet(fromStart, low, lowInclusive, toEnd, high, highInclusive, !descending);
+        }
+
+        private NavigableSet<E> range(E from, boolean fromInclusive, boolean lowBound, E to, boolean toInclusive, boolean highBound) {
+            if (lowBound && !inRange(from, fromInclusive) || highBound && !inRange(to, toInclusive)) {
+                throw new IllegalArgumentException("Element out of range.");
+            }
+            if (lowBound && highBound && compare(from, to) > 0) {
+                throw new IllegalArgumentException("Left argument must be less than right.");
+            }
+            return new SubSet(
+                    lowBound ? false : fromStart, lowBound ? from : low, lowBound ? fromInclusive : lowInclusive,
+                    highBound ? false : toEnd, highBound ? to : high, highBound ? toInclusive : highInclusive,
+                    descending);
+        }
+
+        @Override
+        public NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+            return descending
+                    ? range(toElement, toInclusive, true, fromElement, fromInclusive, true)
+                    : range(fromElement, fromInclusive, true, toElement, toInclusive, true);
+        }
+
+        @Override
+        public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+            return descending
+                    ? range(toElement, inclusive, true, null, false, false)
+                    : range(null, false, false, toElement, inclusive, true);
+        }
+
+        @Override
+        public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+            return descending
+                    ? range(null, false, false, fromElement, inclusive, true)
+                    : range(fromElement, inclusive, true, null, false, false);
+        }
+
+        @Override
+        public NavigableSet<E> subSet(E fromElement, E toElement) {
+            return subSet(fromElement, true, toElement, false);
+        }
+
+        @Override
+        public NavigableSet<E> headSet(E toElement) {
+            return headSet(toElement, false);
+        }
+
+        @Override
+        public NavigableSet<E> tailSet(E fromElement) {
+            return tailSet(fromElement, true);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package ru.ifmo.rain.shaldin.arrayset;
+
+import java.util.Comparator;
+
+/**
+ * Copy of sorted array in Eytzinger (breadth-first) order: children of node {@code k} are {@code 2k} and {@code 2k + 1}.
+ * First levels of the tree, which are visited by every search, share few cache lines,
+ * and next probes of a search are close to each other, unlike in binary search on sorted array.
+ * Keys stay boxed, so every probe still dereferences an object outside the layout, and Java has no software prefetch:
+ * beyond last level cache the gain is small. Primitive sets use {@link BlockedLayout} instead.
+ */
+class EytzingerLayout<E> {
+    private final Object[] keys;
+    private final int[] indices;
+    private final Comparator<? super E> comparator;
+
+    /**
+     * Constructor for {@link EytzingerLayout}
+     *
+     * @param elements   sorted elements
+     * @param comparator order of elements, {@code null} for natural order
+     */
+    EytzingerLayout(Object[] elements, Comparator<? super E> comparator) {
+        this.keys = new Object[elements.length + 1];
+        this.indices = new int[elements.length + 1];
+        this.comparator = comparator;
+        build(elements, 0, 1);
+    }
+
+    private int build(Object[] elements, int index, int node) {
+        if (node < keys.length) {
+            index = build(elements, index, 2 * node);
+            keys[node] = elements[index];
+            indices[node] = index;
+            index = build(elements, index + 1, 2 * node + 1);
+        }
+        return index;
+    }
+
+    @SuppressWarnings("unchecked")
+    int compare(Object first, E second) {
+        return comparator != null ? comparator.compare((E) first, second) : ((Comparable<? super E>) first).compareTo(second);
+    }
+
+    /**
+     * Returns index of first element, which is not less than {@code key}, or number of elements, if there is no such element.
+     * Returned index is negated and decreased by one, if element is equal to key.
+     */
+    int lowerBound(E key) {
+        int node = 1;
+        int found = 0;
+        while (node < keys.length) {
+            int cmp = compare(keys[node], key);
+            if (cmp == 0) {
+                found = node;
+            }
+            node = 2 * node + (cmp < 0 ? 1 : 0);
+        }
+        if (found != 0) {
+            return ~indices[found];
+        }
+        node >>>= Integer.numberOfTrailingZeros(~node) + 1;
+        return node == 0 ? keys.length - 1 : indices[node];
+    }
+
+    boolean contains(E key) {
+        int node = 1;
+        while (node < keys.length) {
+            int cmp = compare(keys[node], key);
+            if (cmp == 0) {
+                return true;
+            }
+            node = 2 * node + (cmp < 0 ? 1 : 0);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,177 @@
+package ru.ifmo.rain.shaldin.arrayset;
+
+import java.util.*;
+
+/**
+ * Immutable sorted set of {@code int} values, backed by array.
+ * Unlike {@code ArraySet<Integer>}, it does not box elements and searches directly in array.
+ * Views refer to range of the same array.
+ * For big sets, {@link #withBlockedLayout()} gives the same set, which searches in cache-friendly {@link BlockedLayout}.
+ */
+public class IntArraySet extends PrimitiveArraySet<Integer, IntArraySet> {
+    private final int[] elements;
+
+    public IntArraySet() {
+        this(new int[0], null);
+    }
+
+    public IntArraySet(int[] values) {
+        this(sortedUnique(values.clone()), null);
+    }
+
+    public IntArraySet(Collection<? extends Integer> collection) {
+        this(sortedUnique(collection.stream().mapToInt(Integer::intValue).toArray()), null);
+    }
+
+    private IntArraySet(int[] elements, BlockedLayout layout) {
+        this(elements, 0, elements.length, layout);
+    }
+
+    private IntArraySet(int[] elements, int from, int to, BlockedLayout layout) {
+        super(from, to, layout);
+        this.elements = elements;
+    }
+
+    /**
+     * Returns the same set, which searches elements in {@link BlockedLayout}.
+     * Layout is built once for whole backing array, in {@code O(n)} time and memory,
+     * and is shared by all views of returned set. Iteration order does not change.
+     *
+     * @return set with blocked search layout
+     */
+    public IntArraySet withBlockedLayout() {
+        return withLayout();
+    }
+
+    @Override
+    int length() {
+        return elements.length;
+    }
+
+    @Override
+    long key(int index) {
+        return elements[index];
+    }
+
+    @Override
+    int binarySearch(long value) {
+        return Arrays.binarySearch(elements, from, to, (int) value);
+    }
+
+    @Override
+    IntArraySet create(int from, int to, BlockedLayout layout) {
+        return new IntArraySet(elements, from, to, layout);
+    }
+
+    private static int[] sortedUnique(int[] values) {
+        Arrays.sort(values);
+        int size = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (size == 0 || values[size - 1] != values[i]) {
+                values[size++] = values[i];
+            }
+        }
+        return size == values.length ? values : Arrays.copyOf(values, size);
+    }
+
+    @Override
+    public PrimitiveIterator.OfInt iterator() {
+        class Values extends Cursor implements PrimitiveIterator.OfInt {
+            @Override
+            public int nextInt() {
+                return elements[nextIndex()];
+            }
+        }
+        return new Values();
+    }
+
+    public boolean contains(int value) {
+        return containsKey(value);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Integer && contains((int) (Integer) o);
+    }
+
+    private OptionalInt getOrEmpty(int index) {
+        return inRange(index) ? OptionalInt.of(elements[index]) : OptionalInt.empty();
+    }
+
+    public OptionalInt lower(int value) {
+        return getOrEmpty(index(value, -1, -1));
+    }
+
+    public OptionalInt floor(int value) {
+        return getOrEmpty(index(value, 0, -1));
+    }
+
+    public OptionalInt ceiling(int value) {
+        return getOrEmpty(index(value, 0, 0));
+    }
+
+    public OptionalInt higher(int value) {
+        return getOrEmpty(index(value, 1, 0));
+    }
+
+    public IntArraySet headSet(int toElement, boolean inclusive) {
+        return headRange(toElement, inclusive);
+    }
+
+    public IntArraySet tailSet(int fromElement, boolean inclusive) {
+        return tailRange(fromElement, inclusive);
+    }
+
+    public IntArraySet subSet(int fromElement, boolean fromInclusive, int toElement, boolean toInclusive) {
+        return subRange(fromElement, fromInclusive, toElement, toInclusive);
+    }
+
+    public IntArraySet headSet(int toElement) {
+        return headSet(toElement, false);
+    }
+
+    public IntArraySet tailSet(int fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    public IntArraySet subSet(int fromElement, int toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public IntArraySet headSet(Integer toElement) {
+        return headSet((int) toElement);
+    }
+
+    @Override
+    public IntArraySet tailSet(Integer fromElement) {
+        return tailSet((int) fromElement);
+    }
+
+    @Override
+    public IntArraySet subSet(Integer fromElement, Integer toElement) {
+        return subSet((int) fromElement, (int) toElement);
+    }
+
+    public int firstInt() throws NoSuchElementException {
+        return elements[firstIndex()];
+    }
+
+    public int lastInt() throws NoSuchElementException {
+        return elements[lastIndex()];
+    }
+
+    @Override
+    public Integer first() throws NoSuchElementException {
+        return firstInt();
+    }
+
+    @Override
+    public Integer last() throws NoSuchElementException {
+        return lastInt();
+    }
+
+    public int[] toIntArray() {
+        return Arrays.copyOfRange(elements, from, to);
+    }
+}
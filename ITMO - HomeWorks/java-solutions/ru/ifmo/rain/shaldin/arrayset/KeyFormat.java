@@ -0,0 +1,78 @@
+package ru.ifmo.rain.shaldin.arrayset;
+
+import java.nio.ByteBuffer;
+import java.util.Comparator;
+
+/**
+ * Fixed-width binary format of keys of {@link MappedArraySet}.
+ * Encoded keys must be compared as unsigned big-endian byte strings in the same order as keys.
+ */
+public interface KeyFormat<E> {
+    /**
+     * Returns width of encoded key in bytes.
+     */
+    int getWidth();
+
+    /**
+     * Puts encoded key to buffer at its position.
+     *
+     * @param key    key to encode
+     * @param buffer buffer with at least {@link #getWidth()} remaining bytes
+     */
+    void write(E key, ByteBuffer buffer);
+
+    /**
+     * Decodes key at given offset of buffer.
+     *
+     * @param buffer buffer with encoded keys
+     * @param offset offset of key
+     */
+    E read(ByteBuffer buffer, int offset);
+
+    /**
+     * Returns order of keys, {@code null} for natural order.
+     */
+    default Comparator<? super E> comparator() {
+        return null;
+    }
+
+    /**
+     * Signed {@code long} keys, encoded in 8 bytes with inverted sign bit.
+     */
+    KeyFormat<Long> LONG = new KeyFormat<>() {
+        @Override
+        public int getWidth() {
+            return Long.BYTES;
+        }
+
+        @Override
+        public void write(Long key, ByteBuffer buffer) {
+            buffer.putLong(key ^ Long.MIN_VALUE);
+        }
+
+        @Override
+        public Long read(ByteBuffer buffer, int offset) {
+            return buffer.getLong(offset) ^ Long.MIN_VALUE;
+        }
+    };
+
+    /**
+     * Signed {@code int} keys, encoded in 4 bytes with inverted sign bit.
+     */
+    KeyFormat<Integer> INT = new KeyFormat<>() {
+        @Override
+        public int getWidth() {
+            return Integer.BYTES;
+        }
+
+        @Override
+        public void write(Integer key, ByteBuffer buffer) {
+            buffer.putInt(key ^ Integer.MIN_VALUE);
+        }
+
+        @Override
+        public Integer read(ByteBuffer buffer, int offset) {
+            return buffer.getInt(offset) ^ Integer.MIN_VALUE;
+        }
+    };
+}
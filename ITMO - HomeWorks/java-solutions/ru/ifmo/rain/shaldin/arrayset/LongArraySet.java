@@ -0,0 +1,177 @@
+package ru.ifmo.rain.shaldin.arrayset;
+
+import java.util.*;
+
+/**
+ * Immutable sorted set of {@code long} values, backed by array.
+ * Unlike {@code ArraySet<Long>}, it does not box elements and searches directly in array.
+ * Views refer to range of the same array.
+ * For big sets, {@link #withBlockedLayout()} gives the same set, which searches in cache-friendly {@link BlockedLayout}.
+ */
+public class LongArraySet extends PrimitiveArraySet<Long, LongArraySet> {
+    private final long[] elements;
+
+    public LongArraySet() {
+        this(new long[0], null);
+    }
+
+    public LongArraySet(long[] values) {
+        this(sortedUnique(values.clone()), null);
+    }
+
+    public LongArraySet(Collection<? extends Long> collection) {
+        this(sortedUnique(collection.stream().mapToLong(Long::longValue).toArray()), null);
+    }
+
+    private LongArraySet(long[] elements, BlockedLayout layout) {
+        this(elements, 0, elements.length, layout);
+    }
+
+    private LongArraySet(long[] elements, int from, int to, BlockedLayout layout) {
+        super(from, to, layout);
+        this.elements = elements;
+    }
+
+    /**
+     * Returns the same set, which searches elements in {@link BlockedLayout}.
+     * Layout is built once for whole backing array, in {@code O(n)} time and memory,
+     * and is shared by all views of returned set. Iteration order does not change.
+     *
+     * @return set with blocked search layout
+     */
+    public LongArraySet withBlockedLayout() {
+        return withLayout();
+    }
+
+    @Override
+    int length() {
+        return elements.length;
+    }
+
+    @Override
+    long key(int index) {
+        return elements[index];
+    }
+
+    @Override
+    int binarySearch(long value) {
+        return Arrays.binarySearch(elements, from, to, value);
+    }
+
+    @Override
+    LongArraySet create(int from, int to, BlockedLayout layout) {
+        return new LongArraySet(elements, from, to, layout);
+    }
+
+    private static long[] sortedUnique(long[] values) {
+        Arrays.sort(values);
+        int size = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (size == 0 || values[size - 1] != values[i]) {
+                values[size++] = values[i];
+            }
+        }
+        return size == values.length ? values : Arrays.copyOf(values, size);
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong iterator() {
+        class Values extends Cursor implements PrimitiveIterator.OfLong {
+            @Override
+            public long nextLong() {
+                return elements[nextIndex()];
+            }
+        }
+        return new Values();
+    }
+
+    public boolean contains(long value) {
+        return containsKey(value);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Long && contains((long) (Long) o);
+    }
+
+    private OptionalLong getOrEmpty(int index) {
+        return inRange(index) ? OptionalLong.of(elements[index]) : OptionalLong.empty();
+    }
+
+    public OptionalLong lower(long value) {
+        return getOrEmpty(index(value, -1, -1));
+    }
+
+    public OptionalLong floor(long value) {
+        return getOrEmpty(index(value, 0, -1));
+    }
+
+    public OptionalLong ceiling(long value) {
+        return getOrEmpty(index(value, 0, 0));
+    }
+
+    public OptionalLong higher(long value) {
+        return getOrEmpty(index(value, 1, 0));
+    }
+
+    public LongArraySet headSet(long toElement, boolean inclusive) {
+        return headRange(toElement, inclusive);
+    }
+
+    public LongArraySet tailSet(long fromElement, boolean inclusive) {
+        return tailRange(fromElement, inclusive);
+    }
+
+    public LongArraySet subSet(long fromElement, boolean fromInclusive, long toElement, boolean toInclusive) {
+        return subRange(fromElement, fromInclusive, toElement, toInclusive);
+    }
+
+    public LongArraySet headSet(long toElement) {
+        return headSet(toElement, false);
+    }
+
+    public LongArraySet tailSet(long fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    public LongArraySet subSet(long fromElement, long toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public LongArraySet headSet(Long toElement) {
+        return headSet((long) toElement);
+    }
+
+    @Override
+    public LongArraySet tailSet(Long fromElement) {
+        return tailSet((long) fromElement);
+    }
+
+    @Override
+    public LongArraySet subSet(Long fromElement, Long toElement) {
+        return subSet((long) fromElement, (long) toElement);
+    }
+
+    public long firstLong() throws NoSuchElementException {
+        return elements[firstIndex()];
+    }
+
+    public long lastLong() throws NoSuchElementException {
+        return elements[lastIndex()];
+    }
+
+    @Override
+    public Long first() throws NoSuchElementException {
+        return firstLong();
+    }
+
+    @Override
+    public Long last() throws NoSuchElementException {
+        return lastLong();
+    }
+
+    public long[] toLongArray() {
+        return Arrays.copyOfRange(elements, from, to);
+    }
+}
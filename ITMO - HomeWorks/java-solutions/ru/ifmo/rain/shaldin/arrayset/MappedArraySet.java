@@ -0,0 +1,275 @@
+package ru.ifmo.rain.shaldin.arrayset;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Immutable sorted set of fixed-width keys, stored in memory mapped file.
+ * Opening does not read keys, they are searched directly in mapping and decoded only when returned.
+ * File starts with header: magic, key width ({@code int}) and number of keys ({@code long}),
+ * followed by keys in {@link KeyFormat} in increasing order. Use {@link #write} to create file.
+ * Views refer to range of the same mapping.
+ */
+public class MappedArraySet<E> extends AbstractSet<E> implements SortedSet<E> {
+    private static final int MAGIC = 0x4d415331;
+    private static final int HEADER_SIZE = 16;
+    private static final long SEGMENT_SIZE = 1L << 30;
+
+    private final KeyFormat<E> format;
+    private final MappedByteBuffer[] segments;
+    private final long keysPerSegment;
+    private final long from;
+    private final long to;
+
+    private MappedArraySet(KeyFormat<E> format, MappedByteBuffer[] segments, long keysPerSegment, long from, long to) {
+        this.format = format;
+        this.segments = segments;
+        this.keysPerSegment = keysPerSegment;
+        this.from = from;
+        this.to = to;
+    }
+
+    private static long keysPerSegment(int width) {
+        return Math.max(1, SEGMENT_SIZE / width);
+    }
+
+    /**
+     * Maps set from file.
+     *
+     * @param file   file, created by {@link #write}
+     * @param format format of keys
+     * @throws IOException if file cannot be read or has invalid header
+     */
+    public static <E> MappedArraySet<E> open(Path file, KeyFormat<E> format) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            channel.read(header, 0);
+            header.flip();
+            int width = format.getWidth();
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC || header.getInt() != width) {
+                throw new IOException("Invalid set file " + file);
+            }
+            long count = header.getLong();
+            if (count < 0 || HEADER_SIZE + count * width > channel.size()) {
+                throw new IOException("Truncated set file " + file);
+            }
+            long keysPerSegment = keysPerSegment(width);
+            MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((count + keysPerSegment - 1) / keysPerSegment)];
+            for (int i = 0; i < segments.length; i++) {
+                long first = i * keysPerSegment;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + first * width,
+                        Math.min(keysPerSegment, count - first) * width);
+            }
+            return new MappedArraySet<>(format, segments, keysPerSegment, 0, count);
+        }
+    }
+
+    /**
+     * Writes set to file, which can be opened by {@link #open}.
+     *
+     * @param set    keys in order of {@code format}
+     * @param format format of keys
+     * @param file   file to write
+     * @throws IOException              if file cannot be written
+     * @throws IllegalArgumentException if encoded keys are not in increasing order
+     */
+    public static <E> void write(SortedSet<? extends E> set, KeyFormat<E> format, Path file) throws IOException {
+        int width = format.getWidth();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(Math.max(1 << 16, HEADER_SIZE + width));
+            buffer.putInt(MAGIC).putInt(width).putLong(0);
+            byte[] previous = new byte[width];
+            byte[] current = new byte[width];
+            long count = 0;
+            for (E key : set) {
+                if (buffer.remaining() < width) {
+                    flush(channel, buffer);
+                }
+                int start = buffer.position();
+                format.write(key, buffer);
+                buffer.duplicate().position(start).get(current);
+                if (count > 0 && Arrays.compareUnsigned(previous, current) >= 0) {
+                    throw new IllegalArgumentException("Keys are not in increasing order of their encoding");
+                }
+                byte[] swap = previous;
+                previous = current;
+                current = swap;
+                count++;
+            }
+            flush(channel, buffer);
+            buffer.putLong(count).flip();
+            channel.write(buffer, Integer.BYTES * 2);
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private ByteBuffer segment(long index) {
+        return segments[(int) (index / keysPerSegment)];
+    }
+
+    private int offset(long index) {
+        return (int) (index % keysPerSegment) * format.getWidth();
+    }
+
+    private E get(long index) {
+        return format.read(segment(index), offset(index));
+    }
+
+    private byte[] encode(E key) {
+        ByteBuffer buffer = ByteBuffer.allocate(format.getWidth());
+        format.write(key, buffer);
+        return buffer.array();
+    }
+
+    private int compare(long index, byte[] key) {
+        ByteBuffer segment = segment(index);
+        int offset = offset(index);
+        int i = 0;
+        for (; i + Long.BYTES <= key.length; i += Long.BYTES) {
+            int cmp = Long.compareUnsigned(segment.getLong(offset + i), getLong(key, i));
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        for (; i < key.length; i++) {
+            int cmp = Integer.compare(segment.get(offset + i) & 0xff, key[i] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    }
+
+    private static long getLong(byte[] bytes, int offset) {
+        long result = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            result = result << 8 | bytes[offset + i] & 0xff;
+        }
+        return result;
+    }
+
+    /**
+     * Searches for encoded key like {@link Arrays#binarySearch(long[], long)}, but with {@code long} indices.
+     */
+    private long search(byte[] key) {
+        long left = from;
+        long right = to - 1;
+        while (left <= right) {
+            long middle = (left + right) >>> 1;
+            int cmp = compare(middle, key);
+            if (cmp < 0) {
+                left = middle + 1;
+            } else if (cmp > 0) {
+                right = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return ~left;
+    }
+
+    private long lowerBound(E key) {
+        long index = search(encode(key));
+        return index >= 0 ? index : ~index;
+    }
+
+    private MappedArraySet<E> range(long fromIndex, long toIndex) {
+        return new MappedArraySet<>(format, segments, keysPerSegment, fromIndex, Math.max(fromIndex, toIndex));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean contains(Object o) {
+        return search(encode((E) o)) >= 0;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<>() {
+            private long index = from;
+
+            @Override
+            public boolean hasNext() {
+                return index < to;
+            }
+
+            @Override
+            public E next() {
+                if (index >= to) {
+                    throw new NoSuchElementException();
+                }
+                return get(index++);
+            }
+        };
+    }
+
+    /**
+     * Returns number of keys, which can exceed {@link Integer#MAX_VALUE}.
+     */
+    public long longSize() {
+        return to - from;
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, longSize());
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+        return format.comparator();
+    }
+
+    @Override
+    public MappedArraySet<E> headSet(E toElement) {
+        return range(from, lowerBound(toElement));
+    }
+
+    @Override
+    public MappedArraySet<E> tailSet(E fromElement) {
+        return range(lowerBound(fromElement), to);
+    }
+
+    @Override
+    public MappedArraySet<E> subSet(E fromElement, E toElement) {
+        byte[] fromKey = encode(fromElement);
+        byte[] toKey = encode(toElement);
+        if (Arrays.compareUnsigned(fromKey, toKey) > 0) {
+            throw new IllegalArgumentException("Left argument must be less than right.");
+        }
+        long fromIndex = search(fromKey);
+        long toIndex = search(toKey);
+        return range(fromIndex >= 0 ? fromIndex : ~fromIndex, toIndex >= 0 ? toIndex : ~toIndex);
+    }
+
+    private void checkSize() throws NoSuchElementException {
+        if (from == to) {
+            throw new NoSuchElementException("Collection is empty.");
+        }
+    }
+
+    @Override
+    public E first() throws NoSuchElementException {
+        checkSize();
+        return get(from);
+    }
+
+    @Override
+    public E last() throws NoSuchElementException {
+        checkSize();
+        return get(to - 1);
+    }
+}
@@ -0,0 +1,150 @@
+package ru.ifmo.rain.shaldin.arrayset;
+
+import java.util.AbstractSet;
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+
+/**
+ * Range {@code [from, to)} of sorted array of unique primitive values, common part of {@link IntArraySet} and {@link LongArraySet}.
+ * Searches, views and iteration work with indices of backing array; subclasses only read values at them.
+ * Values are passed widened to {@code long}, so {@code int} values keep their order.
+ *
+ * @param <E> boxed type of values
+ * @param <S> type of set itself, returned by views
+ */
+abstract class PrimitiveArraySet<E, S extends PrimitiveArraySet<E, S>> extends AbstractSet<E> implements SortedSet<E> {
+    final int from;
+    final int to;
+    final BlockedLayout layout;
+
+    PrimitiveArraySet(int from, int to, BlockedLayout layout) {
+        this.from = from;
+        this.to = to;
+        this.layout = layout;
+    }
+
+    /**
+     * Returns length of the whole backing array.
+     */
+    abstract int length();
+
+    /**
+     * Returns value at {@code index} of backing array.
+     */
+    abstract long key(int index);
+
+    /**
+     * Searches for {@code value} in range of set like {@link java.util.Arrays#binarySearch(long[], int, int, long)}.
+     * {@code value} is always a value of set's type.
+     */
+    abstract int binarySearch(long value);
+
+    /**
+     * Creates set on range {@code [from, to)} of the same backing array.
+     */
+    abstract S create(int from, int to, BlockedLayout layout);
+
+    /**
+     * Returns the same set with {@link BlockedLayout} of whole backing array, shared by all its views.
+     */
+    @SuppressWarnings("unchecked")
+    S withLayout() {
+        if (layout != null) {
+            return (S) this;
+        }
+        return create(from, to, new BlockedLayout(length(), this::key));
+    }
+
+    private int search(long value) {
+        if (layout == null) {
+            return binarySearch(value);
+        }
+        int index = Math.max(from, Math.min(to, layout.lowerBound(value)));
+        return index < to && key(index) == value ? index : ~index;
+    }
+
+    boolean containsKey(long value) {
+        if (layout != null) {
+            return from < to && key(from) <= value && value <= key(to - 1) && layout.contains(value);
+        }
+        return search(value) >= 0;
+    }
+
+    /**
+     * Returns index of {@code value} shifted by {@code ifFound}, or its insertion point shifted by {@code ifNotFound}.
+     * Index out of set's range means that there is no such element.
+     */
+    int index(long value, int ifFound, int ifNotFound) {
+        int index = search(value);
+        return index >= 0 ? index + ifFound : ~index + ifNotFound;
+    }
+
+    boolean inRange(int index) {
+        return from <= index && index < to;
+    }
+
+    private S range(int fromIndex, int toIndex) {
+        return create(fromIndex, Math.max(fromIndex, toIndex), layout);
+    }
+
+    S headRange(long toElement, boolean inclusive) {
+        return range(from, inclusive ? index(toElement, 1, 0) : index(toElement, 0, 0));
+    }
+
+    S tailRange(long fromElement, boolean inclusive) {
+        return range(inclusive ? index(fromElement, 0, 0) : index(fromElement, 1, 0), to);
+    }
+
+    S subRange(long fromElement, boolean fromInclusive, long toElement, boolean toInclusive) {
+        if (fromElement > toElement) {
+            throw new IllegalArgumentException("Left argument must be less than right.");
+        }
+        return range(fromInclusive ? index(fromElement, 0, 0) : index(fromElement, 1, 0),
+                toInclusive ? index(toElement, 1, 0) : index(toElement, 0, 0));
+    }
+
+    @Override
+    public int size() {
+        return to - from;
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+        return null;
+    }
+
+    private void checkSize() throws NoSuchElementException {
+        if (size() == 0) {
+            throw new NoSuchElementException("Collection is empty.");
+        }
+    }
+
+    int firstIndex() throws NoSuchElementException {
+        checkSize();
+        return from;
+    }
+
+    int lastIndex() throws NoSuchElementException {
+        checkSize();
+        return to - 1;
+    }
+
+    /**
+     * Walks over indices of set's range, subclasses read values at them.
+     */
+    class Cursor {
+        private int index = from;
+
+        public boolean hasNext() {
+            return index < to;
+        }
+
+        int nextIndex() {
+            if (index >= to) {
+                throw new NoSuchElementException();
+            }
+            return index++;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package ru.ifmo.rain.shaldin.arrayset;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+import java.util.Random;
+import java.util.TreeSet;
+
+
+public class PrimitiveArraySetTest {
+    private static final int SIZE = 1_000;
+    private static final int QUERIES = 500;
+
+    private final Random random = new Random(2350);
+
+    @Before
+    public void printTestInfo() {
+        System.out.println("--------------------");
+        System.out.print("Test ");
+    }
+
+    private static Integer boxed(OptionalInt value) {
+        return value.isPresent() ? value.getAsInt() : null;
+    }
+
+    private static Long boxed(OptionalLong value) {
+        return value.isPresent() ? value.getAsLong() : null;
+    }
+
+    private int[] randomInts(int length, int bound) {
+        int[] values = new int[length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt(bound) - bound / 2;
+        }
+        return values;
+    }
+
+    private long[] randomLongs() {
+        long[] values = new long[SIZE];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextLong();
+        }
+        values[0] = Long.MIN_VALUE;
+        values[1] = Long.MAX_VALUE;
+        return values;
+    }
+
+    private static void checkInts(NavigableSet<Integer> expected, IntArraySet actual, int[] queries) {
+        Assert.assertEquals(new ArrayList<>(expected), new ArrayList<>(actual));
+        Assert.assertEquals(expected.size(), actual.size());
+        if (expected.isEmpty()) {
+            try {
+                actual.firstInt();
+                Assert.fail("Empty set has first element");
+            } catch (NoSuchElementException ignored) {
+            }
+        } else {
+            Assert.assertEquals(expected.first(), actual.first());
+            Assert.assertEquals(expected.last(), actual.last());
+        }
+        for (int query : queries) {
+            Assert.assertEquals(expected.contains(query), actual.contains(query));
+            Assert.assertEquals(expected.lower(query), boxed(actual.lower(query)));
+            Assert.assertEquals(expected.floor(query), boxed(actual.floor(query)));
+            Assert.assertEquals(expected.ceiling(query), boxed(actual.ceiling(query)));
+            Assert.assertEquals(expected.higher(query), boxed(actual.higher(query)));
+        }
+    }
+
+    private static void checkLongs(NavigableSet<Long> expected, LongArraySet actual, long[] queries) {
+        Assert.assertEquals(new ArrayList<>(expected), new ArrayList<>(actual));
+        Assert.assertEquals(expected.size(), actual.size());
+        if (expected.isEmpty()) {
+            try {
+                actual.firstLong();
+                Assert.fail("Empty set has first element");
+            } catch (NoSuchElementException ignored) {
+            }
+        } else {
+            Assert.assertEquals(expected.first(), actual.first());
+            Assert.assertEquals(expected.last(), actual.last());
+        }
+        for (long query : queries) {
+            Assert.assertEquals(expected.contains(query), actual.contains(query));
+            Assert.assertEquals(expected.lower(query), boxed(actual.lower(query)));
+            Assert.assertEquals(expected.floor(query), boxed(actual.floor(query)));
+            Assert.assertEquals(expected.ceiling(query), boxed(actual.ceiling(query)));
+            Assert.assertEquals(expected.higher(query), boxed(actual.higher(query)));
+        }
+    }
+
+    private void checkIntViews(TreeSet<Integer> expected, IntArraySet actual, int[] queries) {
+        checkInts(expected, actual, queries);
+        for (int i = 0; i < 20; i++) {
+            int left = queries[random.nextInt(queries.length)];
+            int right = queries[random.nextInt(queries.length)];
+            if (left > right) {
+                int tmp = left;
+                left = right;
+                right = tmp;
+            }
+            boolean leftInclusive = random.nextBoolean();
+            boolean rightInclusive = random.nextBoolean();
+            checkInts(expected.headSet(right, rightInclusive), actual.headSet(right, rightInclusive), queries);
+            checkInts(expected.tailSet(left, leftInclusive), actual.tailSet(left, leftInclusive), queries);
+            NavigableSet<Integer> expectedSub = expected.subSet(left, leftInclusive, right, rightInclusive);
+            IntArraySet actualSub = actual.subSet(left, leftInclusive, right, rightInclusive);
+            checkInts(expectedSub, actualSub, queries);
+            if (left < right) {
+                checkInts(expected.tailSet(left, leftInclusive).headSet(right, rightInclusive),
+                        actual.tailSet(left, leftInclusive).headSet(right, rightInclusive), queries);
+            }
+        }
+    }
+
+    private void checkLongViews(TreeSet<Long> expected, LongArraySet actual, long[] queries) {
+        checkLongs(expected, actual, queries);
+        for (int i = 0; i < 20; i++) {
+            long left = queries[random.nextInt(queries.length)];
+            long right = queries[random.nextInt(queries.length)];
+            if (left > right) {
+                long tmp = left;
+                left = right;
+                right = tmp;
+            }
+            boolean leftInclusive = random.nextBoolean();
+            boolean rightInclusive = random.nextBoolean();
+            checkLongs(expected.headSet(right, rightInclusive), actual.headSet(right, rightInclusive), queries);
+            checkLongs(expected.tailSet(left, leftInclusive), actual.tailSet(left, leftInclusive), queries);
+            NavigableSet<Long> expectedSub = expected.subSet(left, leftInclusive, right, rightInclusive);
+            LongArraySet actualSub = actual.subSet(left, leftInclusive, right, rightInclusive);
+            checkLongs(expectedSub, actualSub, queries);
+            if (left < right) {
+                checkLongs(expected.tailSet(left, leftInclusive).headSet(right, rightInclusive),
+                        actual.tailSet(left, leftInclusive).headSet(right, rightInclusive), queries);
+            }
+        }
+    }
+
+    @Test
+    public void test01_testEmpty() {
+        System.out.print("1: ");
+        int[] intQueries = {Integer.MIN_VALUE, -1, 0, 1, Integer.MAX_VALUE};
+        checkInts(new TreeSet<>(), new IntArraySet(), intQueries);
+        checkInts(new TreeSet<>(), new IntArraySet().withBlockedLayout(), intQueries);
+        long[] longQueries = {Long.MIN_VALUE, -1, 0, 1, Long.MAX_VALUE};
+        checkLongs(new TreeSet<>(), new LongArraySet(), longQueries);
+        checkLongs(new TreeSet<>(), new LongArraySet().withBlockedLayout(), longQueries);
+        System.out.println("OK");
+    }
+
+    @Test
+    public void test02_testIntSet() {
+        System.out.print("2: ");
+        for (int bound : new int[]{10, 1_000, Integer.MAX_VALUE}) {
+            int[] values = randomInts(SIZE, bound);
+            TreeSet<Integer> expected = new TreeSet<>();
+            for (int value : values) {
+                expected.add(value);
+            }
+            int[] queries = randomInts(QUERIES, bound);
+            queries[0] = Integer.MIN_VALUE;
+            queries[1] = Integer.MAX_VALUE;
+            IntArraySet actual = new IntArraySet(values);
+            checkIntViews(expected, actual, queries);
+            checkIntViews(expected, actual.withBlockedLayout(), queries);
+            checkIntViews(expected, new IntArraySet(expected), queries);
+        }
+        System.out.println("OK");
+    }
+
+    @Test
+    public void test03_testLongSet() {
+        System.out.print("3: ");
+        long[] values = randomLongs();
+        TreeSet<Long> expected = new TreeSet<>();
+        for (long value : values) {
+            expected.add(value);
+        }
+        long[] queries = new long[QUERIES];
+        for (int i = 0; i < queries.length; i++) {
+            long value = values[random.nextInt(values.length)];
+            queries[i] = i % 2 == 0 ? value : value + random.nextInt(3) - 1;
+        }
+        LongArraySet actual = new LongArraySet(values);
+        checkLongViews(expected, actual, queries);
+        checkLongViews(expected, actual.withBlockedLayout(), queries);
+        checkLongViews(expected, new LongArraySet(expected), queries);
+        System.out.println("OK");
+    }
+
+    @Test
+    public void test04_testBadRange() {
+        System.out.print("4: ");
+        List<Runnable> ranges = List.of(
+                () -> new IntArraySet(new int[]{1, 2, 3}).subSet(2, 1),
+                () -> new IntArraySet(new int[]{1, 2, 3}).withBlockedLayout().subSet(2, 1),
+                () -> new LongArraySet(new long[]{1, 2, 3}).subSet(2, 1),
+                () -> new LongArraySet(new long[]{1, 2, 3}).withBlockedLayout().subSet(2, 1)
+        );
+        for (Runnable range : ranges) {
+            try {
+                range.run();
+                Assert.fail("Bad range is accepted");
+            } catch (IllegalArgumentException ignored) {
+            }
+        }
+        System.out.println("OK");
+    }
+}
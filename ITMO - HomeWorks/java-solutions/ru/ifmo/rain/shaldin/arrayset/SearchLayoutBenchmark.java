@@ -0,0 +1,86 @@
+package ru.ifmo.rain.shaldin.arrayset;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.LongSupplier;
+
+/**
+ * Compares {@link ArraySet#contains} latency with binary search and with {@link ArraySet#withEytzingerLayout()},
+ * and {@link LongArraySet#contains(long)} latency with binary search and with {@link LongArraySet#withBlockedLayout()}.
+ * Usage: {@code SearchLayoutBenchmark [max_size]}, sizes are powers of four from {@code 2^10} to {@code max_size}
+ * (default {@code 2^24}), so small sets fit in L1 cache and big ones do not fit in last level cache.
+ * Run with heap big enough for {@code max_size} boxed integers.
+ */
+public class SearchLayoutBenchmark {
+    private static final int QUERIES = 1 << 20;
+    private static final int ROUNDS = 5;
+
+    private static long run(ArraySet<Integer> set, Integer[] queries) {
+        long found = 0;
+        for (Integer query : queries) {
+            if (set.contains(query)) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    private static long run(LongArraySet set, long[] queries) {
+        long found = 0;
+        for (long query : queries) {
+            if (set.contains(query)) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    private static double measure(LongSupplier run) {
+        long best = Long.MAX_VALUE;
+        long found = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            found += run.getAsLong();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        if (found < 0) {
+            System.out.println(found);
+        }
+        return (double) best / QUERIES;
+    }
+
+    public static void main(String[] args) {
+        int maxSize = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 24;
+        Random random = new Random(239);
+        System.out.printf("%10s %15s %15s %15s %15s%n", "size", "binary, ns", "eytzinger, ns", "long binary, ns", "blocked, ns");
+        for (int size = 1 << 10; size <= maxSize; size *= 4) {
+            List<Integer> elements = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                elements.add(2 * i);
+            }
+            ArraySet<Integer> set = new ArraySet<>(elements);
+            ArraySet<Integer> eytzinger = set.withEytzingerLayout();
+            elements = null;
+            long[] values = new long[size];
+            for (int i = 0; i < size; i++) {
+                values[i] = 2L * i;
+            }
+            LongArraySet longs = new LongArraySet(values);
+            LongArraySet blocked = longs.withBlockedLayout();
+            values = null;
+            Integer[] queries = new Integer[QUERIES];
+            long[] longQueries = new long[QUERIES];
+            for (int i = 0; i < QUERIES; i++) {
+                queries[i] = random.nextInt(2 * size);
+                longQueries[i] = queries[i];
+            }
+            if (run(set, queries) != run(eytzinger, queries) || run(set, queries) != run(blocked, longQueries)) {
+                throw new AssertionError("Layouts give different results");
+            }
+            System.out.printf("%10d %15.1f %15.1f %15.1f %15.1f%n", size,
+                    measure(() -> run(set, queries)), measure(() -> run(eytzinger, queries)),
+                    measure(() -> run(longs, longQueries)), measure(() -> run(blocked, longQueries)));
+        }
+    }
+}
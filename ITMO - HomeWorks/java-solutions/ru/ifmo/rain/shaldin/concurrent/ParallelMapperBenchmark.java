@@ -0,0 +1,61 @@
+package ru.ifmo.rain.shaldin.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Measures throughput of {@link ParallelMapperImpl} with 1 to {@code max_threads} threads
+ * for tiny and heavy mapping functions.
+ * Usage: {@code ParallelMapperBenchmark [max_threads]}, default is 64.
+ */
+public class ParallelMapperBenchmark {
+    private static final int DEFAULT_MAX_THREADS = 64;
+    private static final int TINY_ELEMENTS = 1_000_000;
+    private static final int HEAVY_ELEMENTS = 10_000;
+    private static final int HEAVY_ITERATIONS = 100_000;
+    private static final int ROUNDS = 5;
+
+    private static volatile long sink;
+
+    private static long heavy(int x) {
+        long hash = x;
+        for (int i = 0; i < HEAVY_ITERATIONS; i++) {
+            hash = hash * 6364136223846793005L + 1442695040888963407L;
+        }
+        return hash;
+    }
+
+    private static double measure(int threads, List<Integer> args, Function<Integer, Long> f) throws InterruptedException {
+        try (ParallelMapperImpl mapper = new ParallelMapperImpl(threads)) {
+            long best = Long.MAX_VALUE;
+            for (int round = 0; round < ROUNDS; round++) {
+                long start = System.nanoTime();
+                List<Long> result = mapper.map(f, args);
+                best = Math.min(best, System.nanoTime() - start);
+                sink += result.get(result.size() - 1);
+            }
+            return args.size() * 1e9 / best;
+        }
+    }
+
+    private static List<Integer> range(int size) {
+        List<Integer> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(i);
+        }
+        return list;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_MAX_THREADS;
+        List<Integer> tiny = range(TINY_ELEMENTS);
+        List<Integer> heavy = range(HEAVY_ELEMENTS);
+        System.out.printf("%8s %20s %20s%n", "threads", "tiny, elements/s", "heavy, elements/s");
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            System.out.printf("%8d %20.0f %20.0f%n", threads,
+                    measure(threads, tiny, x -> (long) x + 1),
+                    measure(threads, heavy, x -> heavy(x)));
+        }
+    }
+}
@@ -3,11 +3,29 @@ package ru.ifmo.rain.shaldin.concurrent;
 import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Function;
 
+/**
+ * Mapper with work stealing: every worker has its own lock-free deque of tasks.
+ * Tasks are spread over deques round-robin; worker takes tasks from head of own deque
+ * and, when it is empty, steals from tail of deques of other workers.
+ * Workers without tasks park and are unparked by new tasks.
+ */
 public class ParallelMapperImpl implements ParallelMapper {
-    private final Queue<Runnable> queue;
+    private static final int SPINS = 64;
+    private static final int CHUNKS_PER_WORKER = 4;
+    private static final double CHUNK_NANOS = 50_000;
+
+    private final Worker[] workers;
     private final List<Thread> threads;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicInteger idle = new AtomicInteger();
+    private volatile double elementNanos;
+    private volatile boolean closed;
 
     /**
      * Constructor for {@link ParallelMapperImpl}
@@ -18,73 +36,184 @@ public class ParallelMapperImpl implements ParallelMapper {
         if (count <= 0) {
             throw new IllegalArgumentException("Incorrect amount of threads.");
         }
+        workers = new Worker[count];
         threads = new ArrayList<>();
-        queue = new ArrayDeque<>();
         for (int i = 0; i < count; i++) {
-            threads.add(new Thread(() -> {
-                try {
-                    while (!Thread.interrupted()) {
-                        Runnable task;
-                        synchronized (queue) {
-                            while (queue.isEmpty()) {
-                                queue.wait();
-                            }
-                            task = queue.poll();
+            workers[i] = new Worker();
+            threads.add(workers[i].thread);
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+    }
+
+    private class Worker implements Runnable {
+        private final Deque<Runnable> tasks = new ConcurrentLinkedDeque<>();
+        private final Thread thread = new Thread(this);
+        private volatile boolean parked;
+
+        private Runnable steal() {
+            int start = ThreadLocalRandom.current().nextInt(workers.length);
+            for (int i = 0; i < workers.length; i++) {
+                Worker victim = workers[(start + i) % workers.length];
+                if (victim != this) {
+                    Runnable task = victim.tasks.pollLast();
+                    if (task != null) {
+                        return task;
+                    }
+                }
+            }
+            return null;
+        }
+
+        private Runnable take() {
+            Runnable task = tasks.pollFirst();
+            return task != null ? task : steal();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!closed && !Thread.interrupted()) {
+                    Runnable task = take();
+                    for (int spin = 0; task == null && spin < SPINS; spin++) {
+                        Thread.onSpinWait();
+                        task = take();
+                    }
+                    if (task == null) {
+                        parked = true;
+                        idle.incrementAndGet();
+                        task = take();
+                        if (task == null) {
+                            LockSupport.park(this);
                         }
+                        parked = false;
+                        idle.decrementAndGet();
+                    }
+                    if (task != null) {
                         task.run();
                     }
-                } catch (InterruptedException ignore) {
-                } finally {
-                    Thread.currentThread().interrupt();
                 }
-            }));
-            threads.get(i).start();
+            } finally {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void submit(Runnable task) {
+        Worker worker = workers[Math.floorMod(next.getAndIncrement(), workers.length)];
+        worker.tasks.addLast(task);
+        if (idle.get() > 0) {
+            if (worker.parked) {
+                LockSupport.unpark(worker.thread);
+                return;
+            }
+            for (Worker other : workers) {
+                if (other.parked) {
+                    LockSupport.unpark(other.thread);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Number of chunks not yet mapped by one {@link #map} call. Last chunk unparks waiting thread.
+     */
+    private static class Countdown {
+        private final AtomicInteger remaining;
+        private final Thread waiter = Thread.currentThread();
+        private volatile Throwable error;
+
+        Countdown(int chunks) {
+            remaining = new AtomicInteger(chunks);
+        }
+
+        boolean finished() {
+            return remaining.get() == 0;
+        }
+
+        void done() {
+            if (remaining.decrementAndGet() == 0) {
+                LockSupport.unpark(waiter);
+            }
         }
     }
 
+    /**
+     * Returns size of chunk: small enough to give every worker {@link #CHUNKS_PER_WORKER} chunks,
+     * but raised to {@link #CHUNK_NANOS} of work by observed cost of element.
+     * Cost is observed over previous calls, which may map other functions,
+     * so it never makes chunks larger than share of one worker.
+     */
+    private int chunkSize(int n) {
+        int balanced = (n + workers.length * CHUNKS_PER_WORKER - 1) / (workers.length * CHUNKS_PER_WORKER);
+        double cost = elementNanos;
+        int minimal = cost > 0 ? (int) Math.min(n, CHUNK_NANOS / cost) : 1;
+        int perWorker = (n + workers.length - 1) / workers.length;
+        return Math.max(1, Math.min(perWorker, Math.max(balanced, minimal)));
+    }
+
     /**
      * Maps function {@code f} over specified {@code args}.
-     * Mapping for each element performs in parallel.
+     * Arguments are split into chunks, which are mapped in parallel.
+     * Size of chunks depends on number of arguments and threads and on observed time of mapping one element.
+     *
+     * Exception or error thrown by {@code f} is rethrown by this method; worker threads keep running.
      *
      * @throws InterruptedException if calling thread was interrupted
      */
     @Override
+    @SuppressWarnings("unchecked")
     public <T, R> List<R> map(Function<? super T, ? extends R> f, List<? extends T> args) throws InterruptedException {
         if (args == null || args.size() == 0) {
             throw new IllegalArgumentException("Empty list of arguments.");
         }
         int n = args.size();
-        List<R> result = new ArrayList<>(Collections.nCopies(n, null));
-        List<Integer> updated = new ArrayList<>(Collections.nCopies(1, 0));
-        for (int i = 0; i < n; i++) {
-            final int pos = i;
-            synchronized (queue) {
-                queue.add(() -> {
-                    result.set(pos, f.apply(args.get(pos)));
-                    synchronized (updated) {
-                        updated.set(0, updated.get(0) + 1);
-                        updated.notify();
+        int chunk = chunkSize(n);
+        Object[] result = new Object[n];
+        Countdown countdown = new Countdown((n + chunk - 1) / chunk);
+        for (int from = 0; from < n; from += chunk) {
+            final int l = from;
+            final int r = Math.min(n, from + chunk);
+            submit(() -> {
+                try {
+                    long start = System.nanoTime();
+                    for (int i = l; i < r; i++) {
+                        result[i] = f.apply(args.get(i));
                     }
-                });
-                queue.notify();
-            }
+                    double cost = (double) (System.nanoTime() - start) / (r - l);
+                    double previous = elementNanos;
+                    elementNanos = previous == 0 ? cost : (3 * previous + cost) / 4;
+                } catch (Throwable e) {
+                    countdown.error = e;
+                } finally {
+                    countdown.done();
+                }
+            });
         }
 
-        while (true) {
-            synchronized (updated) {
-                if (updated.get(0) == n) {
-                    break;
-                }
-                updated.wait();
+        while (!countdown.finished()) {
+            LockSupport.park(this);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
             }
         }
-
-        return result;
+        Throwable error = countdown.error;
+        if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        } else if (error instanceof Error) {
+            throw (Error) error;
+        } else if (error != null) {
+            throw new RuntimeException("Cannot map arguments. " + error.getMessage(), error);
+        }
+        return (List<R>) Arrays.asList(result);
     }
 
     /** Stops all threads. All unfinished mappings leave in undefined state. */
     @Override
     public void close() {
+        closed = true;
         for (int i = 0; i < threads.size(); i++) {
             threads.get(i).interrupt();
         }
@@ -0,0 +1,83 @@
+package ru.ifmo.rain.shaldin.concurrent;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+
+public class ParallelMapperImplTest {
+    private static final int THREADS = 4;
+    private static final long SLEEP_MILLIS = 200;
+
+    @Before
+    public void printTestInfo() {
+        System.out.println("--------------------");
+        System.out.print("Test ");
+    }
+
+    private static List<Integer> range(int n) {
+        return IntStream.range(0, n).boxed().collect(Collectors.toList());
+    }
+
+    private static Integer sleep(Integer x) {
+        try {
+            Thread.sleep(SLEEP_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return x;
+    }
+
+    @Test
+    public void test01_testMap() throws InterruptedException {
+        System.out.print("1: ");
+        try (ParallelMapperImpl mapper = new ParallelMapperImpl(THREADS)) {
+            List<Integer> args = range(100_000);
+            List<Integer> expected = new ArrayList<>();
+            for (Integer x : args) {
+                expected.add(x * 2);
+            }
+            Assert.assertEquals(expected, mapper.map(x -> x * 2, args));
+            Assert.assertEquals(List.of(1), mapper.map(x -> x + 1, List.of(0)));
+        }
+        System.out.println("OK");
+    }
+
+    @Test
+    public void test02_testHeavyAfterCheap() throws InterruptedException {
+        System.out.print("2: ");
+        try (ParallelMapperImpl mapper = new ParallelMapperImpl(THREADS)) {
+            List<Integer> cheap = range(200_000);
+            for (int i = 0; i < 3; i++) {
+                mapper.map(x -> x + 1, cheap);
+            }
+            List<Integer> heavy = range(THREADS);
+            long start = System.nanoTime();
+            Assert.assertEquals(heavy, mapper.map(ParallelMapperImplTest::sleep, heavy));
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            Assert.assertTrue("Heavy elements were mapped serially: " + millis + " ms", millis < 2 * SLEEP_MILLIS);
+        }
+        System.out.println("OK");
+    }
+
+    @Test
+    public void test03_testCheapAfterHeavy() throws InterruptedException {
+        System.out.print("3: ");
+        try (ParallelMapperImpl mapper = new ParallelMapperImpl(THREADS)) {
+            mapper.map(ParallelMapperImplTest::sleep, range(THREADS));
+            List<Integer> cheap = range(200_000);
+            Assert.assertEquals(cheap, mapper.map(x -> x, cheap));
+            List<Integer> heavy = range(2 * THREADS);
+            long start = System.nanoTime();
+            Assert.assertEquals(heavy, mapper.map(ParallelMapperImplTest::sleep, heavy));
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            Assert.assertTrue("Heavy elements were not spread: " + millis + " ms", millis < 3 * SLEEP_MILLIS);
+        }
+        System.out.println("OK");
+    }
+}
@@ -0,0 +1,251 @@
+package ru.ifmo.rain.shaldin.walk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps hashes of files in watched directories up to date.
+ * Directories and file hashes are recorded during full pass of {@link RecursiveWalk},
+ * then {@link #watch(HashSink)} waits for {@link WatchService} events and writes delta lines:
+ * {@code "+ <hash> <file>"} for added, {@code "~ <hash> <file>"} for changed
+ * and {@code "- <hash> <file>"} for removed files, where removed file has its last known hash.
+ * <p>
+ * Events, which arrive within {@code COALESCE_MILLIS} of each other, are processed as one batch,
+ * so every file is hashed at most once per batch, and only if its size or modification time changed.
+ * Batch is closed after {@code MAX_BATCH_MILLIS} or {@code MAX_BATCH_PATHS} changed paths, even if events keep arriving.
+ * On overflow, the affected directory is rescanned.
+ */
+public class DirectoryWatcher implements Closeable {
+    private static final long COALESCE_MILLIS = 100;
+    private static final long MAX_BATCH_MILLIS = 1000;
+    private static final int MAX_BATCH_PATHS = 10_000;
+
+    private static class State {
+        private final byte[] hash;
+        private final long size;
+        private final FileTime modified;
+
+        State(byte[] hash, BasicFileAttributes attrs) {
+            this.hash = hash;
+            this.size = attrs.size();
+            this.modified = attrs.lastModifiedTime();
+        }
+
+        boolean same(BasicFileAttributes attrs) {
+            return size == attrs.size() && modified.equals(attrs.lastModifiedTime());
+        }
+    }
+
+    private final FileHasher hasher;
+    private final WatchService service;
+    private final Map<WatchKey, Path> directories = new ConcurrentHashMap<>();
+    private final ConcurrentNavigableMap<Path, State> files = new ConcurrentSkipListMap<>(DirectoryWatcher::compareInTree);
+
+    /**
+     * Constructor for {@link DirectoryWatcher}
+     *
+     * @param hasher hasher for changed files
+     * @throws IOException if watch service cannot be created
+     */
+    public DirectoryWatcher(FileHasher hasher) throws IOException {
+        this.hasher = hasher;
+        service = FileSystems.getDefault().newWatchService();
+    }
+
+    /**
+     * Compares paths so that every directory is immediately followed by its descendants:
+     * separator is less than any other character.
+     */
+    private static int compareInTree(Path first, Path second) {
+        String a = first.toString();
+        String b = second.toString();
+        char separator = first.getFileSystem().getSeparator().charAt(0);
+        int length = Math.min(a.length(), b.length());
+        for (int i = 0; i < length; i++) {
+            char x = a.charAt(i);
+            char y = b.charAt(i);
+            if (x != y) {
+                return x == separator ? -1 : y == separator ? 1 : Character.compare(x, y);
+            }
+        }
+        return Integer.compare(a.length(), b.length());
+    }
+
+    /**
+     * Starts watching directory, but not its subdirectories.
+     *
+     * @param directory directory to watch
+     * @throws IOException if directory cannot be watched
+     */
+    public void register(Path directory) throws IOException {
+        WatchKey key = directory.register(service,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        directories.put(key, directory);
+    }
+
+    /**
+     * Records hash of file, which was computed in full pass.
+     *
+     * @param file  file
+     * @param attrs attributes of file before hashing
+     * @param hash  hash of file
+     */
+    public void record(Path file, BasicFileAttributes attrs, byte[] hash) {
+        files.put(file, new State(hash, attrs));
+    }
+
+    /**
+     * Writes delta lines until calling thread is interrupted.
+     * Output is flushed after every batch of events.
+     *
+     * @param output output for delta lines
+     * @throws IOException if output cannot be written
+     */
+    public void watch(HashSink output) throws IOException {
+        output.flush();
+        try {
+            while (!Thread.interrupted()) {
+                Set<Path> changed = new LinkedHashSet<>();
+                Set<Path> rescans = new LinkedHashSet<>();
+                WatchKey key = service.take();
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(MAX_BATCH_MILLIS);
+                do {
+                    collect(key, changed, rescans);
+                } while (changed.size() < MAX_BATCH_PATHS && System.nanoTime() < deadline
+                        && (key = service.poll(COALESCE_MILLIS, TimeUnit.MILLISECONDS)) != null);
+                for (Path directory : rescans) {
+                    rescan(directory, output);
+                }
+                for (Path path : changed) {
+                    update(path, output);
+                }
+                output.flush();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ignore) {
+        }
+    }
+
+    private void collect(WatchKey key, Set<Path> changed, Set<Path> rescans) {
+        Path directory = directories.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (directory == null) {
+                continue;
+            }
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                rescans.add(directory);
+            } else {
+                changed.add(directory.resolve((Path) event.context()));
+            }
+        }
+        if (!key.reset()) {
+            directories.remove(key);
+        }
+    }
+
+    private void update(Path path, HashSink output) throws IOException {
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            remove(path, output);
+            return;
+        }
+        if (attrs.isDirectory()) {
+            rescan(path, output);
+        } else {
+            update(path, attrs, output);
+        }
+    }
+
+    private void update(Path file, BasicFileAttributes attrs, HashSink output) throws IOException {
+        State old = files.get(file);
+        if (old != null && old.same(attrs)) {
+            return;
+        }
+        byte[] hash;
+        try {
+            hash = hasher.hash(file);
+        } catch (IOException e) {
+            hash = new byte[hasher.getAlgorithm().getLength()];
+        }
+        files.put(file, new State(hash, attrs));
+        if (old == null) {
+            output.write('+', hash, file.toString());
+        } else if (!Arrays.equals(old.hash, hash)) {
+            output.write('~', hash, file.toString());
+        }
+    }
+
+    /**
+     * Returns iterator over recorded files, starting from {@code path} and its descendants.
+     */
+    private Iterator<Map.Entry<Path, State>> subtree(Path path) {
+        return files.tailMap(path, true).entrySet().iterator();
+    }
+
+    private void remove(Path path, HashSink output) throws IOException {
+        Iterator<Map.Entry<Path, State>> iterator = subtree(path);
+        while (iterator.hasNext()) {
+            Map.Entry<Path, State> entry = iterator.next();
+            if (!entry.getKey().startsWith(path)) {
+                break;
+            }
+            output.write('-', entry.getValue().hash, entry.getKey().toString());
+            iterator.remove();
+        }
+    }
+
+    private void rescan(Path directory, HashSink output) throws IOException {
+        Set<Path> present = new HashSet<>();
+        try {
+            Files.walkFileTree(directory, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    register(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    present.add(file);
+                    update(file, attrs, output);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            remove(directory, output);
+            return;
+        }
+        Iterator<Map.Entry<Path, State>> iterator = subtree(directory);
+        while (iterator.hasNext()) {
+            Map.Entry<Path, State> entry = iterator.next();
+            if (!entry.getKey().startsWith(directory)) {
+                break;
+            }
+            if (!present.contains(entry.getKey())) {
+                output.write('-', entry.getValue().hash, entry.getKey().toString());
+                iterator.remove();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        service.close();
+    }
+}
@@ -0,0 +1,198 @@
+package ru.ifmo.rain.shaldin.walk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Finds groups of files with equal content.
+ * Files are grouped by size first, files with unique size are never read.
+ * Then files larger than two samples are compared by hash of head and tail samples,
+ * and only files with equal samples are hashed completely.
+ * Hash may be short (32 bits by default), so files with equal hashes are finally compared byte by byte
+ * and files, which differ, are never reported as duplicates.
+ * Groups and files in groups are reported in the order files were added.
+ */
+public class DuplicateFinder {
+    private static final int SAMPLE_SIZE = 4096;
+    private static final int COMPARE_BUFFER_SIZE = 1 << 16;
+
+    private final FileHasher hasher;
+    private final int threads;
+    private final Map<Long, List<Path>> sizes = new HashMap<>();
+    private final Map<Path, Integer> order = new HashMap<>();
+
+    /**
+     * Constructor for {@link DuplicateFinder}
+     *
+     * @param hasher  hasher of file content
+     * @param threads amount of hashing threads
+     */
+    public DuplicateFinder(FileHasher hasher, int threads) {
+        this.hasher = hasher;
+        this.threads = threads;
+    }
+
+    /**
+     * Adds file to compare. Files, which were already added, are ignored.
+     *
+     * @param file file
+     * @param size size of file
+     */
+    public void add(Path file, long size) {
+        if (order.putIfAbsent(file, order.size()) != null) {
+            return;
+        }
+        sizes.computeIfAbsent(size, s -> new ArrayList<>()).add(file);
+    }
+
+    private interface Task<T, R> {
+        R apply(T value) throws IOException;
+    }
+
+    private interface Hash extends Task<Path, byte[]> {
+    }
+
+    private List<List<Path>> split(List<List<Path>> groups, Hash hash, Map<Path, byte[]> hashes) throws IOException {
+        List<Path> files = new ArrayList<>();
+        groups.forEach(files::addAll);
+        List<byte[]> results = applyAll(files, hash);
+        Iterator<byte[]> result = results.iterator();
+        List<List<Path>> split = new ArrayList<>();
+        for (List<Path> group : groups) {
+            Map<ByteBuffer, List<Path>> parts = new LinkedHashMap<>();
+            for (Path file : group) {
+                byte[] value = result.next();
+                if (value != null) {
+                    hashes.put(file, value);
+                    parts.computeIfAbsent(ByteBuffer.wrap(value), v -> new ArrayList<>()).add(file);
+                }
+            }
+            for (List<Path> part : parts.values()) {
+                if (part.size() > 1) {
+                    split.add(part);
+                }
+            }
+        }
+        return split;
+    }
+
+    private <T, R> List<R> applyAll(List<T> values, Task<T, R> task) throws IOException {
+        List<R> results = new ArrayList<>(values.size());
+        if (threads == 1) {
+            for (T value : values) {
+                results.add(safeApply(task, value));
+            }
+            return results;
+        }
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<R>> futures = new ArrayList<>(values.size());
+            for (T value : values) {
+                futures.add(workers.submit(() -> safeApply(task, value)));
+            }
+            for (Future<R> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Interrupted while hashing files.");
+        } catch (ExecutionException e) {
+            throw new IOException("Cannot hash file. " + e.getCause());
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    private static <T, R> R safeApply(Task<T, R> task, T value) {
+        try {
+            return task.apply(value);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static boolean sameContent(Path first, Path second) throws IOException {
+        try (InputStream a = Files.newInputStream(first); InputStream b = Files.newInputStream(second)) {
+            byte[] x = new byte[COMPARE_BUFFER_SIZE];
+            byte[] y = new byte[COMPARE_BUFFER_SIZE];
+            while (true) {
+                int n = a.readNBytes(x, 0, x.length);
+                int m = b.readNBytes(y, 0, y.length);
+                if (n != m || !Arrays.equals(x, 0, n, y, 0, m)) {
+                    return false;
+                }
+                if (n < x.length) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Splits group of files with equal hashes into groups of files with equal bytes.
+     * Files, which cannot be read, are dropped.
+     */
+    private static List<List<Path>> confirm(List<Path> group) {
+        List<List<Path>> parts = new ArrayList<>();
+        for (Path file : group) {
+            try {
+                List<Path> part = null;
+                for (List<Path> candidate : parts) {
+                    if (sameContent(candidate.get(0), file)) {
+                        part = candidate;
+                        break;
+                    }
+                }
+                if (part == null) {
+                    part = new ArrayList<>();
+                    parts.add(part);
+                }
+                part.add(file);
+            } catch (IOException ignore) {
+            }
+        }
+        parts.removeIf(part -> part.size() < 2);
+        return parts;
+    }
+
+    /**
+     * Writes groups of equal files. Every file is written with its hash, groups are separated with empty line.
+     *
+     * @param output output for groups
+     * @throws IOException if output cannot be written
+     */
+    public void write(HashSink output) throws IOException {
+        List<List<Path>> small = new ArrayList<>();
+        List<List<Path>> large = new ArrayList<>();
+        for (Map.Entry<Long, List<Path>> entry : sizes.entrySet()) {
+            if (entry.getValue().size() > 1) {
+                (entry.getKey() <= 2L * SAMPLE_SIZE ? small : large).add(entry.getValue());
+            }
+        }
+        Map<Path, byte[]> hashes = new HashMap<>();
+        List<List<Path>> candidates = split(small, hasher::hash, hashes);
+        List<List<Path>> sampled = split(large, file -> hasher.hashSample(file, SAMPLE_SIZE), hashes);
+        candidates.addAll(split(sampled, hasher::hash, hashes));
+        List<List<Path>> groups = new ArrayList<>();
+        for (List<List<Path>> parts : applyAll(candidates, DuplicateFinder::confirm)) {
+            groups.addAll(parts);
+        }
+        groups.sort(Comparator.comparing(group -> order.get(group.get(0))));
+        boolean first = true;
+        for (List<Path> group : groups) {
+            if (!first) {
+                output.newLine();
+            }
+            first = false;
+            for (Path file : group) {
+                output.write(hashes.get(file), file.toString());
+            }
+        }
+    }
+}
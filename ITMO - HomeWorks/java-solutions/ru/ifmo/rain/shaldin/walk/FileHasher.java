@@ -0,0 +1,296 @@
+package ru.ifmo.rain.shaldin.walk;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Computes {@link HashAlgorithm} hash of files. Strategy of reading is chosen by file size:
+ * large files are mapped into memory by windows, other files are read through
+ * reusable direct buffer of {@code blockSize} bytes.
+ * Instance is thread-safe. Buffers and digests are taken from a pool for every file,
+ * so they are reused by pooled threads as well as by short-lived virtual threads.
+ */
+public class FileHasher implements Closeable {
+    /**
+     * Way of reading file content.
+     */
+    public enum Strategy {
+        /** {@link InputStream} with 4 KB heap buffer. */
+        STREAM,
+        /** {@link FileChannel} with reusable direct buffer. */
+        CHANNEL,
+        /** {@link MappedByteBuffer} windows. */
+        MAPPED
+    }
+
+    public static final int DEFAULT_BLOCK_SIZE = 1 << 16;
+    public static final long DEFAULT_MAP_THRESHOLD = 1L << 26;
+    private static final int STREAM_BUFFER_SIZE = 4096;
+    private static final long MAP_WINDOW = 1L << 28;
+
+    /**
+     * Buffer and digest for hashing of one file.
+     */
+    protected static class Context {
+        private final ByteBuffer buffer;
+        private final HashAlgorithm.Digest digest;
+
+        Context(ByteBuffer buffer, HashAlgorithm.Digest digest) {
+            this.buffer = buffer;
+            this.digest = digest;
+        }
+
+        public HashAlgorithm.Digest getDigest() {
+            return digest;
+        }
+    }
+
+    private final HashAlgorithm algorithm;
+    private final int blockSize;
+    private final long mapThreshold;
+    private final Queue<Context> contexts = new ConcurrentLinkedQueue<>();
+    private WalkStatistics statistics;
+
+    /**
+     * Constructor for {@link FileHasher}
+     *
+     * @param algorithm    hash algorithm
+     * @param blockSize    size of direct buffer for {@link Strategy#CHANNEL}
+     * @param mapThreshold minimal size of file, which is read by {@link Strategy#MAPPED}
+     */
+    public FileHasher(HashAlgorithm algorithm, int blockSize, long mapThreshold) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive.");
+        }
+        this.algorithm = algorithm;
+        this.blockSize = blockSize;
+        this.mapThreshold = mapThreshold;
+    }
+
+    /**
+     * Constructor for {@link FileHasher} with default block size and map threshold.
+     *
+     * @param algorithm hash algorithm
+     */
+    public FileHasher(HashAlgorithm algorithm) {
+        this(algorithm, DEFAULT_BLOCK_SIZE, DEFAULT_MAP_THRESHOLD);
+    }
+
+    public HashAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Returns name of digest, which is computed by this hasher.
+     */
+    public String getName() {
+        return algorithm.getName();
+    }
+
+    /**
+     * Enables collection of statistics. Must be called before hashing.
+     *
+     * @param statistics statistics to update
+     */
+    public void setStatistics(WalkStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    protected WalkStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Releases threads of hasher. Files are hashed in calling threads, so there is nothing to release.
+     */
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Opens file for reading.
+     */
+    protected FileChannel open(Path file) throws IOException {
+        if (statistics == null) {
+            return FileChannel.open(file, StandardOpenOption.READ);
+        }
+        long start = System.nanoTime();
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        statistics.recordOpen(System.nanoTime() - start);
+        return channel;
+    }
+
+    private int read(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        if (statistics == null) {
+            return position < 0 ? channel.read(buffer) : channel.read(buffer, position);
+        }
+        long start = System.nanoTime();
+        int read = position < 0 ? channel.read(buffer) : channel.read(buffer, position);
+        statistics.recordRead(System.nanoTime() - start, read);
+        return read;
+    }
+
+    /**
+     * Takes context from pool, its digest is reset. Context must be returned by {@link #release(Context)}.
+     */
+    protected Context acquire() {
+        Context context = contexts.poll();
+        if (context == null) {
+            context = new Context(ByteBuffer.allocateDirect(blockSize), algorithm.newDigest());
+        }
+        context.digest.reset();
+        return context;
+    }
+
+    protected void release(Context context) {
+        contexts.add(context);
+    }
+
+    protected byte[] result(Context context) {
+        byte[] result = new byte[algorithm.getLength()];
+        context.digest.digest(result);
+        return result;
+    }
+
+    /**
+     * Returns hash of file content.
+     *
+     * @param file file to hash
+     * @return hash of file
+     * @throws IOException if file cannot be read
+     */
+    public byte[] hash(Path file) throws IOException {
+        long start = statistics == null ? 0 : System.nanoTime();
+        Context context = acquire();
+        try (FileChannel channel = open(file)) {
+            long size = channel.size();
+            return size >= mapThreshold ? hashMapped(context, channel, size) : hashChannel(context, channel);
+        } finally {
+            release(context);
+            if (statistics != null) {
+                statistics.recordFile(file, System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * Returns hash of first and last {@code sampleSize} bytes of file.
+     * If file is not longer than {@code 2 * sampleSize}, whole file is hashed.
+     *
+     * @param file       file to hash
+     * @param sampleSize size of head and tail samples
+     * @return hash of samples
+     * @throws IOException if file cannot be read
+     */
+    public byte[] hashSample(Path file, int sampleSize) throws IOException {
+        Context context = acquire();
+        try (FileChannel channel = open(file)) {
+            long size = channel.size();
+            if (size <= 2L * sampleSize) {
+                return hashChannel(context, channel);
+            }
+            hashRange(context, channel, 0, sampleSize);
+            hashRange(context, channel, size - sampleSize, size);
+            return result(context);
+        } finally {
+            release(context);
+        }
+    }
+
+    /**
+     * Returns hash of {@code prefix} followed by bytes of file from {@code from} to {@code to}.
+     * Channel is read by positional reads, so it may be shared between threads.
+     */
+    protected byte[] hashRange(FileChannel channel, byte prefix, long from, long to) throws IOException {
+        Context context = acquire();
+        try {
+            context.digest.update(ByteBuffer.wrap(new byte[]{prefix}));
+            hashRange(context, channel, from, to);
+            return result(context);
+        } finally {
+            release(context);
+        }
+    }
+
+    private void hashRange(Context context, FileChannel channel, long from, long to) throws IOException {
+        ByteBuffer buffer = context.buffer;
+        while (from < to) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), to - from));
+            int read = read(channel, buffer, from);
+            if (read < 0) {
+                throw new EOFException("File was truncated while reading.");
+            }
+            buffer.flip();
+            context.digest.update(buffer);
+            from += read;
+        }
+    }
+
+    /**
+     * Returns hash of file content, which is read with given strategy.
+     *
+     * @param file     file to hash
+     * @param strategy way of reading file
+     * @return hash of file
+     * @throws IOException if file cannot be read
+     */
+    public byte[] hash(Path file, Strategy strategy) throws IOException {
+        Context context = acquire();
+        try {
+            if (strategy == Strategy.STREAM) {
+                try (InputStream input = Files.newInputStream(file)) {
+                    return hashStream(context, input);
+                }
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                return strategy == Strategy.MAPPED
+                        ? hashMapped(context, channel, channel.size())
+                        : hashChannel(context, channel);
+            }
+        } finally {
+            release(context);
+        }
+    }
+
+    private byte[] hashStream(Context context, InputStream input) throws IOException {
+        int c;
+        byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+        while ((c = input.read(buffer)) >= 0) {
+            context.digest.update(ByteBuffer.wrap(buffer, 0, c));
+        }
+        return result(context);
+    }
+
+    private byte[] hashChannel(Context context, FileChannel channel) throws IOException {
+        ByteBuffer buffer = context.buffer;
+        buffer.clear();
+        while (read(channel, buffer, -1) >= 0) {
+            buffer.flip();
+            context.digest.update(buffer);
+            buffer.clear();
+        }
+        return result(context);
+    }
+
+    private byte[] hashMapped(Context context, FileChannel channel, long size) throws IOException {
+        for (long position = 0; position < size; position += MAP_WINDOW) {
+            long start = statistics == null ? 0 : System.nanoTime();
+            long length = Math.min(MAP_WINDOW, size - position);
+            context.digest.update(channel.map(FileChannel.MapMode.READ_ONLY, position, length));
+            if (statistics != null) {
+                statistics.recordRead(System.nanoTime() - start, length);
+            }
+        }
+        return result(context);
+    }
+}
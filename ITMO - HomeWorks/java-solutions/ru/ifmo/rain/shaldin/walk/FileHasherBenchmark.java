@@ -0,0 +1,51 @@
+package ru.ifmo.rain.shaldin.walk;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Measures throughput of every {@link FileHasher.Strategy}.
+ * Usage: {@code FileHasherBenchmark [file [iterations]]}.
+ * Without file, temporary 1 GB file with random content is created.
+ */
+public class FileHasherBenchmark {
+    private static final long DEFAULT_SIZE = 1L << 30;
+    private static final int DEFAULT_ITERATIONS = 5;
+
+    private static Path createFile(long size) throws IOException {
+        Path file = Files.createTempFile("hash-benchmark", ".bin");
+        file.toFile().deleteOnExit();
+        byte[] block = new byte[1 << 20];
+        new Random(0).nextBytes(block);
+        try (OutputStream output = Files.newOutputStream(file)) {
+            for (long written = 0; written < size; written += block.length) {
+                output.write(block, 0, (int) Math.min(block.length, size - written));
+            }
+        }
+        return file;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path file = args.length > 0 ? Paths.get(args[0]) : createFile(DEFAULT_SIZE);
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ITERATIONS;
+        long size = Files.size(file);
+        FileHasher hasher = new FileHasher(HashAlgorithm.DEFAULT);
+        for (FileHasher.Strategy strategy : FileHasher.Strategy.values()) {
+            byte[] hash = hasher.hash(file, strategy);
+            long best = Long.MAX_VALUE;
+            for (int i = 0; i < iterations; i++) {
+                long start = System.nanoTime();
+                if (!Arrays.equals(hasher.hash(file, strategy), hash)) {
+                    throw new AssertionError("Unstable hash for " + strategy);
+                }
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            System.out.printf("%-8s %s %8.3f GB/s%n", strategy, WalkUtils.toHex(hash), (double) size / best);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package ru.ifmo.rain.shaldin.walk;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 32-bit FNV-1 hash, which was the only hash of walk tools.
+ * Bytes are taken by eight from one {@code long} read.
+ */
+public class Fnv32 implements HashAlgorithm {
+    private static final int OFFSET = 0x811c9dc5;
+    private static final int PRIME = 0x01000193;
+
+    @Override
+    public String getName() {
+        return "fnv32";
+    }
+
+    @Override
+    public int getLength() {
+        return Integer.BYTES;
+    }
+
+    @Override
+    public Digest newDigest() {
+        return new Digest() {
+            private int hash = OFFSET;
+
+            @Override
+            public void reset() {
+                hash = OFFSET;
+            }
+
+            @Override
+            public void update(ByteBuffer buffer) {
+                int h = hash;
+                int i = buffer.position();
+                int end = buffer.limit();
+                boolean reverse = buffer.order() == ByteOrder.LITTLE_ENDIAN;
+                for (; i + Long.BYTES <= end; i += Long.BYTES) {
+                    long word = reverse ? Long.reverseBytes(buffer.getLong(i)) : buffer.getLong(i);
+                    h = (h * PRIME) ^ (int) (word >>> 56);
+                    h = (h * PRIME) ^ (int) (word >>> 48) & 0xff;
+                    h = (h * PRIME) ^ (int) (word >>> 40) & 0xff;
+                    h = (h * PRIME) ^ (int) (word >>> 32) & 0xff;
+                    h = (h * PRIME) ^ (int) (word >>> 24) & 0xff;
+                    h = (h * PRIME) ^ (int) (word >>> 16) & 0xff;
+                    h = (h * PRIME) ^ (int) (word >>> 8) & 0xff;
+                    h = (h * PRIME) ^ (int) word & 0xff;
+                }
+                for (; i < end; i++) {
+                    h = (h * PRIME) ^ (buffer.get(i) & 0xff);
+                }
+                buffer.position(end);
+                hash = h;
+            }
+
+            @Override
+            public void digest(byte[] result) {
+                ByteBuffer.wrap(result).putInt(hash);
+            }
+        };
+    }
+}
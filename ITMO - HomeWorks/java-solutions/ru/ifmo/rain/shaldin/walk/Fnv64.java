@@ -0,0 +1,63 @@
+package ru.ifmo.rain.shaldin.walk;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 64-bit FNV-1a hash. Bytes are taken by eight from one {@code long} read.
+ */
+public class Fnv64 implements HashAlgorithm {
+    private static final long OFFSET = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+
+    @Override
+    public String getName() {
+        return "fnv64";
+    }
+
+    @Override
+    public int getLength() {
+        return Long.BYTES;
+    }
+
+    @Override
+    public Digest newDigest() {
+        return new Digest() {
+            private long hash = OFFSET;
+
+            @Override
+            public void reset() {
+                hash = OFFSET;
+            }
+
+            @Override
+            public void update(ByteBuffer buffer) {
+                long h = hash;
+                int i = buffer.position();
+                int end = buffer.limit();
+                boolean reverse = buffer.order() == ByteOrder.LITTLE_ENDIAN;
+                for (; i + Long.BYTES <= end; i += Long.BYTES) {
+                    long word = reverse ? Long.reverseBytes(buffer.getLong(i)) : buffer.getLong(i);
+                    h = (h ^ (word >>> 56)) * PRIME;
+                    h = (h ^ (word >>> 48 & 0xff)) * PRIME;
+                    h = (h ^ (word >>> 40 & 0xff)) * PRIME;
+                    h = (h ^ (word >>> 32 & 0xff)) * PRIME;
+                    h = (h ^ (word >>> 24 & 0xff)) * PRIME;
+                    h = (h ^ (word >>> 16 & 0xff)) * PRIME;
+                    h = (h ^ (word >>> 8 & 0xff)) * PRIME;
+                    h = (h ^ (word & 0xff)) * PRIME;
+                }
+                for (; i < end; i++) {
+                    h = (h ^ (buffer.get(i) & 0xff)) * PRIME;
+                }
+                buffer.position(end);
+                hash = h;
+            }
+
+            @Override
+            public void digest(byte[] result) {
+                ByteBuffer.wrap(result).putLong(hash);
+            }
+        };
+    }
+}
@@ -0,0 +1,77 @@
+package ru.ifmo.rain.shaldin.walk;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.ServiceLoader;
+
+/**
+ * Hash algorithm for walk tools.
+ * Built-in algorithms are {@code fnv32} (default), {@code fnv64}, {@code xxhash64} and {@code sha256},
+ * other algorithms are found by {@link ServiceLoader}.
+ */
+public interface HashAlgorithm {
+    /**
+     * Hash computation in progress. Instances are not thread-safe.
+     */
+    interface Digest {
+        /**
+         * Starts new computation.
+         */
+        void reset();
+
+        /**
+         * Hashes all remaining bytes of buffer.
+         *
+         * @param buffer bytes to hash
+         */
+        void update(ByteBuffer buffer);
+
+        /**
+         * Writes hash of all bytes since last {@link #reset()} in big-endian order.
+         *
+         * @param result array of at least {@link HashAlgorithm#getLength()} bytes
+         */
+        void digest(byte[] result);
+    }
+
+    /**
+     * Returns name of algorithm, which is used in command line.
+     */
+    String getName();
+
+    /**
+     * Returns length of hash in bytes.
+     */
+    int getLength();
+
+    /**
+     * Creates new computation.
+     */
+    Digest newDigest();
+
+    /**
+     * Default algorithm, which is compatible with older versions of walk tools.
+     */
+    HashAlgorithm DEFAULT = new Fnv32();
+
+    /**
+     * Finds algorithm by name.
+     *
+     * @param name name of algorithm
+     * @return algorithm with given name
+     * @throws IllegalArgumentException if there is no such algorithm
+     */
+    static HashAlgorithm forName(String name) {
+        for (HashAlgorithm algorithm : List.of(DEFAULT, new Fnv64(), new XxHash64(), new MessageDigestAlgorithm("sha256", "SHA-256"))) {
+            if (algorithm.getName().equals(name)) {
+                return algorithm;
+            }
+        }
+        for (HashAlgorithm algorithm : ServiceLoader.load(HashAlgorithm.class)) {
+            if (algorithm.getName().equals(name)) {
+                return algorithm;
+            }
+        }
+        throw new IllegalArgumentException("Unknown hash algorithm " + name);
+    }
+}
@@ -0,0 +1,42 @@
+package ru.ifmo.rain.shaldin.walk;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures throughput of built-in {@link HashAlgorithm}s on in-memory data, so disk speed does not matter.
+ * Usage: {@code HashAlgorithmBenchmark [size [iterations]]}.
+ */
+public class HashAlgorithmBenchmark {
+    private static final int DEFAULT_SIZE = 1 << 28;
+    private static final int DEFAULT_ITERATIONS = 5;
+    private static final int BLOCK_SIZE = FileHasher.DEFAULT_BLOCK_SIZE;
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_SIZE;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ITERATIONS;
+        byte[] data = new byte[size];
+        new Random(0).nextBytes(data);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size).put(data);
+        for (String name : List.of("fnv32", "fnv64", "xxhash64", "sha256")) {
+            HashAlgorithm algorithm = HashAlgorithm.forName(name);
+            HashAlgorithm.Digest digest = algorithm.newDigest();
+            byte[] result = new byte[algorithm.getLength()];
+            long best = Long.MAX_VALUE;
+            for (int i = 0; i <= iterations; i++) {
+                long start = System.nanoTime();
+                digest.reset();
+                for (int from = 0; from < size; from += BLOCK_SIZE) {
+                    buffer.limit(Math.min(size, from + BLOCK_SIZE)).position(from);
+                    digest.update(buffer);
+                }
+                digest.digest(result);
+                if (i > 0) {
+                    best = Math.min(best, System.nanoTime() - start);
+                }
+            }
+            System.out.printf("%-9s %s %6.3f bytes/ns%n", name, WalkUtils.toHex(result), (double) size / best);
+        }
+    }
+}
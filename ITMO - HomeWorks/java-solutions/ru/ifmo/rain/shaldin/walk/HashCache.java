@@ -0,0 +1,355 @@
+package ru.ifmo.rain.shaldin.walk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persistent cache of file hashes. File is hashed again only if its size,
+ * modification time or file key changed since previous run.
+ * <p>
+ * Cache file starts with {@link FileHasher#getName() name of digest}, cache of other digest is treated as empty.
+ * It is followed by append-only log of records
+ * {@code (path, size, modification time, file key, hash)}, later records override earlier ones.
+ * Log is memory mapped on open by 1 GB segments and only record offsets are kept on heap.
+ * New records are appended to log as soon as they are computed, through a small buffer,
+ * so heap usage does not depend on amount of new files. Torn record at the end of log,
+ * left by interrupted run, is cut off before appending.
+ * On {@link #close()}, if more than half of records are superseded by later ones, the whole log is rewritten.
+ */
+public class HashCache implements Closeable {
+    private static final int MAGIC = 0x57484331;
+    private static final long SEGMENT_SIZE = 1L << 30;
+    private static final int MAX_RECORD_SIZE = 1 << 16;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final long RACY_INTERVAL = TimeUnit.SECONDS.toNanos(2);
+
+    private static class Record {
+        private final byte[] path;
+        private final long size;
+        private final long modified;
+        private final byte[] key;
+        private final byte[] hash;
+
+        Record(byte[] path, long size, long modified, byte[] key, byte[] hash) {
+            this.path = path;
+            this.size = size;
+            this.modified = modified;
+            this.key = key;
+            this.hash = hash;
+        }
+
+        int length() {
+            return 2 * Integer.BYTES + path.length + 2 * Long.BYTES + key.length + hash.length;
+        }
+
+        void write(ByteBuffer buffer) {
+            buffer.putInt(path.length).put(path).putLong(size).putLong(modified).putInt(key.length).put(key).put(hash);
+        }
+    }
+
+    private final Path file;
+    private final byte[] algorithm;
+    private final int hashLength;
+    private final ByteBuffer[] segments;
+    private long[] offsets;
+    private int live;
+    private int stale;
+    private long validEnd;
+    private long appendStart;
+    private FileChannel log;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private long[] supersededSlots;
+    private int superseded;
+    private IOException writeError;
+
+    /**
+     * Opens cache file. Missing or damaged file is treated as empty cache.
+     *
+     * @param file      cache file
+     * @param hasher    hasher of cached hashes
+     * @throws IOException if cache file cannot be read
+     */
+    public HashCache(Path file, FileHasher hasher) throws IOException {
+        this.file = file;
+        this.algorithm = hasher.getName().getBytes(StandardCharsets.UTF_8);
+        this.hashLength = hasher.getAlgorithm().getLength();
+        long size = 0;
+        if (Files.exists(file)) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                size = channel.size();
+                segments = new ByteBuffer[(int) ((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+                for (int i = 0; i < segments.length; i++) {
+                    long position = (long) i * SEGMENT_SIZE;
+                    segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                            Math.min(SEGMENT_SIZE + MAX_RECORD_SIZE, size - position));
+                }
+            }
+        } else {
+            segments = new ByteBuffer[0];
+        }
+        offsets = new long[16];
+        Arrays.fill(offsets, -1);
+        int headerSize = 2 * Integer.BYTES + this.algorithm.length;
+        if (size < headerSize || segments[0].getInt(0) != MAGIC || segments[0].getInt(Integer.BYTES) != this.algorithm.length
+                || !Arrays.equals(bytes(segments[0], 2 * Integer.BYTES, this.algorithm.length), this.algorithm)) {
+            return;
+        }
+        long position = headerSize;
+        while (position < size) {
+            int length = recordLength(position);
+            if (length < 0) {
+                break;
+            }
+            index(position);
+            position += length;
+        }
+        validEnd = position;
+    }
+
+    private ByteBuffer segment(long position) {
+        return segments[(int) (position / SEGMENT_SIZE)];
+    }
+
+    private static int local(long position) {
+        return (int) (position % SEGMENT_SIZE);
+    }
+
+    private byte[] bytes(ByteBuffer segment, int position, int length) {
+        byte[] result = new byte[length];
+        segment.duplicate().position(position).get(result);
+        return result;
+    }
+
+    private int recordLength(long position) {
+        ByteBuffer segment = segment(position);
+        int start = local(position);
+        int end = segment.limit();
+        if (end - start < Integer.BYTES) {
+            return -1;
+        }
+        int pathLength = segment.getInt(start);
+        long keyPosition = (long) start + Integer.BYTES + pathLength + 2 * Long.BYTES;
+        if (pathLength < 0 || keyPosition + Integer.BYTES > end) {
+            return -1;
+        }
+        int keyLength = segment.getInt((int) keyPosition);
+        long next = keyPosition + Integer.BYTES + keyLength + hashLength;
+        return keyLength < 0 || next > end ? -1 : (int) (next - start);
+    }
+
+    private static int hashPath(byte[] path) {
+        int hash = Arrays.hashCode(path);
+        return hash ^ (hash >>> 16);
+    }
+
+    private boolean samePath(long position, byte[] path) {
+        ByteBuffer segment = segment(position);
+        int start = local(position);
+        if (segment.getInt(start) != path.length) {
+            return false;
+        }
+        for (int i = 0; i < path.length; i++) {
+            if (segment.get(start + Integer.BYTES + i) != path[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int find(int hash, byte[] path) {
+        int mask = offsets.length - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            if (offsets[i] < 0 || path != null && samePath(offsets[i], path)) {
+                return i;
+            }
+        }
+    }
+
+    private byte[] path(long position) {
+        ByteBuffer segment = segment(position);
+        int start = local(position);
+        return bytes(segment, start + Integer.BYTES, segment.getInt(start));
+    }
+
+    private void index(long position) {
+        if (2 * (live + 1) > offsets.length) {
+            long[] old = offsets;
+            offsets = new long[2 * old.length];
+            Arrays.fill(offsets, -1);
+            for (long offset : old) {
+                if (offset >= 0) {
+                    offsets[find(hashPath(path(offset)), null)] = offset;
+                }
+            }
+        }
+        byte[] path = path(position);
+        int slot = find(hashPath(path), path);
+        if (offsets[slot] < 0) {
+            live++;
+        } else {
+            stale++;
+        }
+        offsets[slot] = position;
+    }
+
+    private static byte[] fileKey(BasicFileAttributes attrs) {
+        Object key = attrs.fileKey();
+        return key == null ? new byte[0] : key.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private Record record(long position) {
+        ByteBuffer segment = segment(position);
+        int start = local(position);
+        int pathLength = segment.getInt(start);
+        int keyPosition = start + Integer.BYTES + pathLength + 2 * Long.BYTES;
+        int keyLength = segment.getInt(keyPosition);
+        return new Record(bytes(segment, start + Integer.BYTES, pathLength),
+                segment.getLong(start + Integer.BYTES + pathLength),
+                segment.getLong(start + Integer.BYTES + pathLength + Long.BYTES),
+                bytes(segment, keyPosition + Integer.BYTES, keyLength),
+                bytes(segment, keyPosition + Integer.BYTES + keyLength, hashLength));
+    }
+
+
+    /**
+     * Returns hash of file, computing it only if file changed since it was cached.
+     *
+     * @param file   file to hash
+     * @param attrs  current attributes of file
+     * @param hasher hasher for changed files
+     * @return hash of file
+     * @throws IOException if file cannot be read
+     */
+    public byte[] hash(Path file, BasicFileAttributes attrs, FileHasher hasher) throws IOException {
+        byte[] path = file.toString().getBytes(StandardCharsets.UTF_8);
+        long size = attrs.size();
+        long modified = attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+        byte[] key = fileKey(attrs);
+        int slot = find(hashPath(path), path);
+        Record record = offsets[slot] < 0 ? null : record(offsets[slot]);
+        if (record != null && record.size == size && record.modified == modified && Arrays.equals(record.key, key)) {
+            return record.hash;
+        }
+        byte[] hash = hasher.hash(file);
+        Record result = new Record(path, size, modified, key, hash);
+        if (result.length() <= MAX_RECORD_SIZE && System.currentTimeMillis() * 1_000_000 - modified > RACY_INTERVAL) {
+            append(result, record == null ? -1 : slot);
+        }
+        return hash;
+    }
+
+    /**
+     * Appends record to log. Failure to write is reported by {@link #close()}, not as failure to hash file.
+     *
+     * @param slot slot of record, which is superseded by this one, or {@code -1}
+     */
+    private synchronized void append(Record record, int slot) {
+        if (writeError != null) {
+            return;
+        }
+        try {
+            if (log == null) {
+                openLog();
+            }
+            if (slot >= 0 && !isSuperseded(slot)) {
+                supersededSlots[slot >>> 6] |= 1L << slot;
+                superseded++;
+            }
+            write(log, buffer, record);
+        } catch (IOException e) {
+            writeError = e;
+        }
+    }
+
+    private void openLog() throws IOException {
+        supersededSlots = new long[(offsets.length + Long.SIZE - 1) / Long.SIZE];
+        if (validEnd == 0) {
+            log = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            buffer.putInt(MAGIC).putInt(algorithm.length).put(algorithm);
+            appendStart = buffer.position();
+        } else {
+            log = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            if (log.size() > validEnd) {
+                log.truncate(validEnd);
+            }
+            appendStart = validEnd;
+        }
+    }
+
+    private boolean isSuperseded(int slot) {
+        return (supersededSlots[slot >>> 6] & 1L << slot) != 0;
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer, Record record) throws IOException {
+        if (buffer.remaining() < record.length()) {
+            write(channel, buffer);
+        }
+        record.write(buffer);
+    }
+
+    /**
+     * Writes buffered records to cache file and rewrites it, if most of its records are superseded.
+     *
+     * @throws IOException if cache file cannot be written
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (log == null) {
+            return;
+        }
+        long end;
+        try {
+            if (writeError == null) {
+                write(log, buffer);
+            }
+            end = log.size();
+        } finally {
+            log.close();
+            log = null;
+        }
+        if (writeError != null) {
+            throw writeError;
+        }
+        if (stale + superseded > live) {
+            compact(end);
+        }
+    }
+
+    /**
+     * Rewrites cache file with records, which are not superseded, and records appended in this run.
+     */
+    private void compact(long end) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            buffer.putInt(MAGIC).putInt(algorithm.length).put(algorithm);
+            for (int slot = 0; slot < offsets.length; slot++) {
+                if (offsets[slot] >= 0 && !isSuperseded(slot)) {
+                    write(out, buffer, record(offsets[slot]));
+                }
+            }
+            write(out, buffer);
+            for (long position = appendStart; position < end; ) {
+                position += in.transferTo(position, end - position, out);
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
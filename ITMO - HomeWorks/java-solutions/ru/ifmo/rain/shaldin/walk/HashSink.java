@@ -0,0 +1,160 @@
+package ru.ifmo.rain.shaldin.walk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Output of walk tools. Lines {@code "<hex hash> <name>"} are encoded
+ * straight into reusable direct buffer, which is written to {@link FileChannel} when full.
+ * Names are encoded in UTF-8, unpaired surrogates are replaced with {@code '?'}.
+ * Writing a line allocates nothing. Instances are not thread-safe.
+ */
+public class HashSink implements Closeable {
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+    private static final int MAX_CHAR_BYTES = 4;
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private WalkStatistics statistics;
+
+    /**
+     * Constructor for {@link HashSink}
+     *
+     * @param channel    channel to write lines
+     * @param bufferSize size of buffer, must fit any hash
+     */
+    public HashSink(FileChannel channel, int bufferSize) {
+        this.channel = channel;
+        buffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    /**
+     * Creates or truncates file and opens {@link HashSink} to it.
+     *
+     * @param file output file
+     * @throws IOException if file cannot be opened
+     */
+    public HashSink(Path file) throws IOException {
+        this(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING), DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Enables collection of time spent in writing.
+     *
+     * @param statistics statistics to update
+     */
+    public void setStatistics(WalkStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    /**
+     * Writes one line.
+     *
+     * @param hash hash of file
+     * @param name name of file
+     * @throws IOException if output cannot be written
+     */
+    public void write(byte[] hash, String name) throws IOException {
+        long start = statistics == null ? 0 : System.nanoTime();
+        int length = name.length();
+        if (buffer.remaining() < 2 * hash.length + 1 + 3 * length + LINE_SEPARATOR.length) {
+            flush();
+        }
+        writeLine(hash, name);
+        if (statistics != null) {
+            statistics.recordWrite(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Writes one line with ASCII marker before hash.
+     *
+     * @param marker marker of line
+     * @param hash   hash of file
+     * @param name   name of file
+     * @throws IOException if output cannot be written
+     */
+    public void write(char marker, byte[] hash, String name) throws IOException {
+        int length = name.length();
+        if (buffer.remaining() < 2 + 2 * hash.length + 1 + 3 * length + LINE_SEPARATOR.length) {
+            flush();
+        }
+        buffer.put((byte) marker).put((byte) ' ');
+        writeLine(hash, name);
+    }
+
+    private void writeLine(byte[] hash, String name) throws IOException {
+        int length = name.length();
+        for (byte b : hash) {
+            buffer.put(HEX_DIGITS[(b >> 4) & 0xf]).put(HEX_DIGITS[b & 0xf]);
+        }
+        buffer.put((byte) ' ');
+        for (int i = 0; i < length; i++) {
+            char c = name.charAt(i);
+            if (buffer.remaining() < MAX_CHAR_BYTES) {
+                flush();
+            }
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xc0 | c >> 6)).put((byte) (0x80 | c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(name.charAt(i + 1))) {
+                int code = Character.toCodePoint(c, name.charAt(++i));
+                buffer.put((byte) (0xf0 | code >> 18))
+                        .put((byte) (0x80 | code >> 12 & 0x3f))
+                        .put((byte) (0x80 | code >> 6 & 0x3f))
+                        .put((byte) (0x80 | code & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                buffer.put((byte) '?');
+            } else {
+                buffer.put((byte) (0xe0 | c >> 12)).put((byte) (0x80 | c >> 6 & 0x3f)).put((byte) (0x80 | c & 0x3f));
+            }
+        }
+        if (buffer.remaining() < LINE_SEPARATOR.length) {
+            flush();
+        }
+        buffer.put(LINE_SEPARATOR);
+    }
+
+    /**
+     * Writes empty line.
+     *
+     * @throws IOException if output cannot be written
+     */
+    public void newLine() throws IOException {
+        if (buffer.remaining() < LINE_SEPARATOR.length) {
+            flush();
+        }
+        buffer.put(LINE_SEPARATOR);
+    }
+
+    /**
+     * Writes all buffered lines to channel.
+     *
+     * @throws IOException if output cannot be written
+     */
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package ru.ifmo.rain.shaldin.walk;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Measures bytes allocated and time per output line of {@link HashSink}
+ * and of former {@code String.format} with {@link BufferedWriter} output.
+ * Usage: {@code HashSinkBenchmark [lines [max bytes per line]]}.
+ * If allocation of {@link HashSink} exceeds given maximum, benchmark fails.
+ */
+public class HashSinkBenchmark {
+    private static final int DEFAULT_LINES = 5_000_000;
+    private static final double DEFAULT_MAX_ALLOCATION = 1;
+
+    private interface Output {
+        void write(int i, byte[] hash, String name) throws IOException;
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static double[] measure(int lines, String[] names, Output output) throws IOException {
+        byte[] hash = new byte[Integer.BYTES];
+        long allocated = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < lines; i++) {
+            hash[0] = (byte) i;
+            output.write(i, hash, names[i % names.length]);
+        }
+        long time = System.nanoTime() - start;
+        return new double[]{(double) (allocatedBytes() - allocated) / lines, (double) time / lines};
+    }
+
+    public static void main(String[] args) throws IOException {
+        int lines = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_LINES;
+        double maxAllocation = args.length > 1 ? Double.parseDouble(args[1]) : DEFAULT_MAX_ALLOCATION;
+        String[] names = new String[1024];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "/data/archive/" + i + "/файл-" + i + ".bin";
+        }
+        Path file = Files.createTempFile("sink-benchmark", ".txt");
+        try {
+            double[] legacy;
+            double[] sink = null;
+            try (BufferedWriter output = Files.newBufferedWriter(file)) {
+                measure(lines / 10, names, (i, hash, name) -> output.write(String.format("%08x", i) + ' ' + name));
+                legacy = measure(lines, names, (i, hash, name) -> {
+                    output.write(String.format("%08x", i) + ' ' + name);
+                    output.newLine();
+                });
+            }
+            for (int run = 0; run < 2; run++) {
+                try (HashSink output = new HashSink(file)) {
+                    sink = measure(lines, names, (i, hash, name) -> output.write(hash, name));
+                }
+            }
+            System.out.printf("%-14s %10.2f bytes/line %8.1f ns/line%n", "BufferedWriter", legacy[0], legacy[1]);
+            System.out.printf("%-14s %10.2f bytes/line %8.1f ns/line%n", "HashSink", sink[0], sink[1]);
+            if (sink[0] > maxAllocation) {
+                throw new AssertionError("HashSink allocates " + sink[0] + " bytes per line, maximum is " + maxAllocation);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package ru.ifmo.rain.shaldin.walk;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Receives files to hash and writes result lines in the order they were added.
+ */
+public interface HashWriter extends Closeable {
+    /**
+     * Task, which computes hash of one file.
+     */
+    @FunctionalInterface
+    interface HashTask {
+        byte[] hash() throws IOException;
+    }
+
+    /**
+     * Adds file to output. If {@code task} fails, zero hash is written.
+     *
+     * @param name name, which is written after hash
+     * @param task hash computation
+     * @throws IOException if output cannot be written
+     */
+    void add(String name, HashTask task) throws IOException;
+
+    /**
+     * Adds file, which cannot be hashed, to output.
+     *
+     * @param name name, which is written after zero hash
+     * @throws IOException if output cannot be written
+     */
+    default void addFailed(String name) throws IOException {
+        add(name, () -> {
+            throw new IOException("Cannot hash " + name);
+        });
+    }
+}
@@ -0,0 +1,70 @@
+package ru.ifmo.rain.shaldin.walk;
+
+import java.nio.ByteBuffer;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * {@link HashAlgorithm} backed by {@link MessageDigest}.
+ */
+public class MessageDigestAlgorithm implements HashAlgorithm {
+    private final String name;
+    private final String algorithm;
+    private final int length;
+
+    /**
+     * Constructor for {@link MessageDigestAlgorithm}
+     *
+     * @param name      name of algorithm for command line
+     * @param algorithm name of {@link MessageDigest} algorithm
+     */
+    public MessageDigestAlgorithm(String name, String algorithm) {
+        this.name = name;
+        this.algorithm = algorithm;
+        this.length = newMessageDigest().getDigestLength();
+    }
+
+    private MessageDigest newMessageDigest() {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("Unsupported algorithm " + algorithm, e);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int getLength() {
+        return length;
+    }
+
+    @Override
+    public Digest newDigest() {
+        MessageDigest digest = newMessageDigest();
+        return new Digest() {
+            @Override
+            public void reset() {
+                digest.reset();
+            }
+
+            @Override
+            public void update(ByteBuffer buffer) {
+                digest.update(buffer);
+            }
+
+            @Override
+            public void digest(byte[] result) {
+                try {
+                    digest.digest(result, 0, length);
+                } catch (DigestException e) {
+                    throw new IllegalArgumentException("Too small array for digest.", e);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,110 @@
+package ru.ifmo.rain.shaldin.walk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads NUL-delimited UTF-8 paths, as written by {@code find -print0}.
+ * File is memory mapped by windows and scanned for delimiters eight bytes at a time,
+ * so memory use does not depend on file size. Every path is decoded only when it is requested.
+ * Empty paths are skipped.
+ */
+public class NulPathReader implements Closeable {
+    private static final long WINDOW_SIZE = 1L << 26;
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGHS = 0x8080808080808080L;
+
+    private final FileChannel channel;
+    private final long size;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private int position;
+    private byte[] bytes = new byte[256];
+
+    /**
+     * Constructor for {@link NulPathReader}
+     *
+     * @param file file with paths
+     * @throws IOException if file cannot be opened
+     */
+    public NulPathReader(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        size = channel.size();
+        map(0);
+    }
+
+    private void map(long start) throws IOException {
+        windowStart = start;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, size - start));
+        window.order(ByteOrder.LITTLE_ENDIAN);
+        position = 0;
+    }
+
+    private int findDelimiter(int from) {
+        int end = window.limit();
+        int i = from;
+        for (; i + Long.BYTES <= end; i += Long.BYTES) {
+            long word = window.getLong(i);
+            long zeros = (word - ONES) & ~word & HIGHS;
+            if (zeros != 0) {
+                // Borrow can mark bytes after the first zero byte only, so the lowest marked byte is zero.
+                return i + Long.numberOfTrailingZeros(zeros) / Byte.SIZE;
+            }
+        }
+        for (; i < end; i++) {
+            if (window.get(i) == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private String decode(int from, int to) {
+        int length = to - from;
+        if (bytes.length < length) {
+            bytes = new byte[Math.max(length, 2 * bytes.length)];
+        }
+        window.position(from);
+        window.get(bytes, 0, length);
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns next path.
+     *
+     * @return next path or {@code null}, if there are no more paths
+     * @throws IOException if file cannot be read or path is longer than window
+     */
+    public String next() throws IOException {
+        while (windowStart + position < size) {
+            int end = findDelimiter(position);
+            if (end < 0) {
+                if (windowStart + window.limit() == size) {
+                    end = window.limit();
+                } else if (position == 0) {
+                    throw new IOException("Too long path at offset " + windowStart);
+                } else {
+                    map(windowStart + position);
+                    continue;
+                }
+            }
+            int start = position;
+            position = Math.min(end + 1, window.limit());
+            if (end > start) {
+                return decode(start, end);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,82 @@
+package ru.ifmo.rain.shaldin.walk;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+public class NulPathReaderTest {
+    private static final byte[] NEAR_ZERO = {0x01, (byte) 0x80, (byte) 0x81, (byte) 0xFF};
+
+    @Before
+    public void printTestInfo() {
+        System.out.println("--------------------");
+        System.out.print("Test ");
+    }
+
+    private static List<String> read(byte[] list) throws IOException {
+        Path file = Files.createTempFile("nul-path-reader", ".txt");
+        try {
+            Files.write(file, list);
+            List<String> paths = new ArrayList<>();
+            try (NulPathReader reader = new NulPathReader(file)) {
+                for (String path = reader.next(); path != null; path = reader.next()) {
+                    paths.add(path);
+                }
+            }
+            return paths;
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static void check(byte[]... paths) throws IOException {
+        ByteArrayOutputStream list = new ByteArrayOutputStream();
+        List<String> expected = new ArrayList<>();
+        for (byte[] path : paths) {
+            list.write(path);
+            list.write(0);
+            expected.add(new String(path, StandardCharsets.UTF_8));
+        }
+        Assert.assertEquals(expected, read(list.toByteArray()));
+    }
+
+    private static byte[] path(int prefix, byte fill, int count) {
+        byte[] path = new byte[prefix + count];
+        Arrays.fill(path, 0, prefix, (byte) 'p');
+        Arrays.fill(path, prefix, path.length, fill);
+        return path;
+    }
+
+    @Test
+    public void test01_testSimple() throws IOException {
+        System.out.print("1: ");
+        Assert.assertEquals(List.of("a", "bc", "d"), read("a\0bc\0\0d\0".getBytes(StandardCharsets.UTF_8)));
+        Assert.assertEquals(List.of("last"), read("last".getBytes(StandardCharsets.UTF_8)));
+        Assert.assertEquals(List.of(), read(new byte[0]));
+        System.out.println("OK");
+    }
+
+    @Test
+    public void test02_testBytesNearDelimiter() throws IOException {
+        System.out.print("2: ");
+        Assert.assertEquals(List.of("abcdef\u0001", "xy"), read("abcdef\u0001\0xy\0".getBytes(StandardCharsets.UTF_8)));
+        for (byte fill : NEAR_ZERO) {
+            for (int prefix = 0; prefix < 2 * Long.BYTES; prefix++) {
+                check(path(prefix, fill, 1), path(0, fill, 2));
+                check(path(prefix, fill, Long.BYTES + 1), path(prefix, fill, Long.BYTES + 1));
+                check(path(prefix, fill, 3), path(prefix, fill, 1), path(0, fill, Long.BYTES));
+            }
+        }
+        System.out.println("OK");
+    }
+}
@@ -0,0 +1,141 @@
+package ru.ifmo.rain.shaldin.walk;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.*;
+
+import static ru.ifmo.rain.shaldin.walk.WalkUtils.*;
+
+/**
+ * {@link HashWriter}, which hashes files in a pool of worker threads.
+ * Lines are written by a separate writer thread in the order files were added,
+ * so output is the same as of {@link SequentialHashWriter}.
+ * Amount of files in flight is bounded, by default it is {@code threads * JOBS_PER_THREAD}.
+ */
+public class ParallelHashWriter implements HashWriter {
+    private static final int JOBS_PER_THREAD = 64;
+
+    private static class Job {
+        private final String name;
+        private final Future<byte[]> hash;
+
+        Job(String name, Future<byte[]> hash) {
+            this.name = name;
+            this.hash = hash;
+        }
+    }
+
+    private static final Job END = new Job(null, null);
+
+    private final HashSink output;
+    private final int hashLength;
+    private final ExecutorService workers;
+    private final BlockingQueue<Job> jobs;
+    private final Semaphore window;
+    private final Thread writer;
+    private volatile IOException error;
+
+    /**
+     * Constructor for {@link ParallelHashWriter}
+     *
+     * @param output     output for result lines
+     * @param hashLength length of hash in bytes
+     * @param threads    amount of hashing threads
+     */
+    public ParallelHashWriter(HashSink output, int hashLength, int threads) {
+        this(output, hashLength, Executors.newFixedThreadPool(threads), threads * JOBS_PER_THREAD);
+    }
+
+    /**
+     * Constructor for {@link ParallelHashWriter}
+     *
+     * @param output     output for result lines
+     * @param hashLength length of hash in bytes
+     * @param workers    executor for hashing, it is shut down on {@link #close()}
+     * @param inFlight   maximum amount of files in flight
+     */
+    public ParallelHashWriter(HashSink output, int hashLength, ExecutorService workers, int inFlight) {
+        if (inFlight <= 0) {
+            throw new IllegalArgumentException("Incorrect amount of files in flight.");
+        }
+        this.output = output;
+        this.hashLength = hashLength;
+        this.workers = workers;
+        jobs = new LinkedBlockingQueue<>();
+        window = new Semaphore(inFlight);
+        writer = new Thread(this::writeJobs);
+        writer.start();
+    }
+
+    private void writeJobs() {
+        try {
+            while (true) {
+                Job job = jobs.take();
+                if (job == END) {
+                    break;
+                }
+                try {
+                    if (error == null) {
+                        output.write(job.hash.get(), job.name);
+                    }
+                } catch (IOException e) {
+                    error = e;
+                } catch (ExecutionException e) {
+                    error = new IOException("Cannot hash file " + job.name + ". " + e.getCause());
+                } finally {
+                    window.release();
+                }
+            }
+        } catch (InterruptedException e) {
+            error = new InterruptedIOException("Writer thread was interrupted.");
+        }
+    }
+
+    private void checkError() throws IOException {
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    @Override
+    public void add(String name, HashTask task) throws IOException {
+        checkError();
+        try {
+            window.acquire();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Interrupted while waiting for hashing threads.");
+        }
+        jobs.add(new Job(name, workers.submit(() -> hashOrZero(task))));
+    }
+
+    /**
+     * Hashes file in worker thread. Like in calling thread, failure of one file gives zero hash
+     * and does not stop the whole run.
+     */
+    private byte[] hashOrZero(HashTask task) {
+        try {
+            return safeHash(task, hashLength);
+        } catch (RuntimeException e) {
+            return new byte[hashLength];
+        }
+    }
+
+    /**
+     * Waits until all added files are written and stops all threads.
+     *
+     * @throws IOException if output cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        jobs.add(END);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            writer.interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for writer thread.");
+        } finally {
+            workers.shutdownNow();
+        }
+        checkError();
+    }
+}
@@ -3,72 +3,105 @@ package ru.ifmo.rain.shaldin.walk;
 import java.io.*;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
 
-public class RecursiveWalk {
-    private static final int BUFFER_SIZE = 4096;
+import static ru.ifmo.rain.shaldin.walk.WalkUtils.*;
 
-    private static int hash(InputStream fileInput) throws IOException {
-        if (fileInput == null) {
-            return 0;
-        }
-        int c = 0, hash = 0x811c9dc5;
-        byte[] BUFFER = new byte[BUFFER_SIZE];
-        while ((c = fileInput.read(BUFFER)) >= 0) {
-            for (int i = 0; i < c; i++) {
-                hash = (hash * 0x01000193) ^ (BUFFER[i] & 0xff);
-            }
-        }
-        return hash;
-    }
+public class RecursiveWalk {
+    private static final List<String> VALUE_FLAGS = List.of("--threads", "--hash", "--block-size", "--map-threshold", "--cache", "--chunk-size", "--stats");
+    private static final List<String> SWITCH_FLAGS = List.of("--dedup", "--tree", "--watch", "--jmx");
 
     public static class MyFileVisitor extends SimpleFileVisitor<Path> {
-        private final BufferedWriter output;
-        MyFileVisitor(BufferedWriter out) {
+        private final HashWriter output;
+        private final FileHasher hasher;
+        private final HashCache cache;
+        private final DirectoryWatcher watcher;
+        MyFileVisitor(HashWriter out, FileHasher hasher, HashCache cache, DirectoryWatcher watcher) {
             output = out;
+            this.hasher = hasher;
+            this.cache = cache;
+            this.watcher = watcher;
+        }
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+            if (watcher != null) {
+                watcher.register(dir);
+            }
+            return FileVisitResult.CONTINUE;
         }
         @Override
         public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-            int hash = 0;
-            try (InputStream fileInput = Files.newInputStream(file)) {
-                hash = hash(fileInput);
-            } catch (IOException | InvalidPathException e) {
-                hash = 0;
+            HashWriter.HashTask task = cache == null
+                    ? () -> hasher.hash(file)
+                    : () -> cache.hash(file, attrs, hasher);
+            if (watcher == null) {
+                output.add(file.toString(), task);
+            } else {
+                output.add(file.toString(), () -> {
+                    byte[] hash = task.hash();
+                    watcher.record(file, attrs, hash);
+                    return hash;
+                });
             }
-            output.write(String.format("%08x", hash) + " " + file.toString());
-            output.newLine();
             return FileVisitResult.CONTINUE;
         }
     }
 
-    private static void run(String inputFileName, String outputFileName) throws IOException {
-        try {
-            Paths.get(outputFileName);
-        } catch (InvalidPathException e) {
-            throw new InvalidPathException("Invalid output path", e.getMessage());
-        }
-        try {
-            Paths.get(inputFileName);
-        } catch (InvalidPathException e) {
-            throw new InvalidPathException("Invalid input path", e.getMessage());
-        }
-        try {
-            if (Paths.get(outputFileName).getParent() != null) {
-                Files.createDirectories(Paths.get(outputFileName).getParent());
+    private static void findDuplicates(BufferedReader input, HashSink output, DuplicateFinder finder) throws IOException {
+        SimpleFileVisitor<Path> visitor = new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                finder.add(file, attrs.size());
+                return FileVisitResult.CONTINUE;
             }
-        } catch (IOException e) {
-            throw new IOException("Cannot create directories for output file. " + e);
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                return FileVisitResult.CONTINUE;
+            }
+        };
+        String line;
+        while ((line = input.readLine()) != null) {
+            try {
+                Files.walkFileTree(Paths.get(line), visitor);
+            } catch (InvalidPathException ignore) {
+            }
+        }
+        finder.write(output);
+    }
+
+    // statistics is not used in body, it is opened for the whole run and closed to print final summary
+    @SuppressWarnings("try")
+    private static void run(WalkOptions options) throws IOException {
+        if (options.has("--dedup") && options.has("--watch")) {
+            throw new IllegalArgumentException("Options --dedup and --watch cannot be used together");
         }
-        try (BufferedReader input = Files.newBufferedReader(Paths.get(inputFileName))) {
-            try (BufferedWriter output = Files.newBufferedWriter(Paths.get(outputFileName))) {
-                String line;
-                while ((line = input.readLine()) != null) {
-                    try {
-                        Files.walkFileTree(Paths.get(line), new MyFileVisitor(output));
-                    } catch (Exception e) {
-                        output.write(String.format("%08x", 0) + ' ' + line);
-                        output.newLine();
+        String inputFileName = options.getInput();
+        String outputFileName = options.getOutput();
+        checkPaths(inputFileName, outputFileName);
+        try (FileHasher hasher = fileHasher(options);
+             BufferedReader input = Files.newBufferedReader(Paths.get(inputFileName))) {
+            try (HashSink output = new HashSink(Paths.get(outputFileName));
+                 WalkStatistics statistics = walkStatistics(options, hasher, output);
+                 DirectoryWatcher watcher = options.has("--watch") ? new DirectoryWatcher(hasher) : null) {
+                if (options.has("--dedup")) {
+                    findDuplicates(input, output, new DuplicateFinder(hasher, options.getInt("--threads", 1)));
+                    return;
+                }
+                try (HashCache cache = hashCache(options, hasher);
+                     HashWriter writer = hashWriter(output, hasher.getAlgorithm().getLength(), options.getInt("--threads", 1))) {
+                    String line;
+                    while ((line = input.readLine()) != null) {
+                        try {
+                            Files.walkFileTree(Paths.get(line), new MyFileVisitor(writer, hasher, cache, watcher));
+                        } catch (Exception e) {
+                            writer.addFailed(line);
+                        }
                     }
                 }
+                if (watcher != null) {
+                    watcher.watch(output);
+                }
             } catch (FileNotFoundException e) {
                 throw new FileNotFoundException("No such output file. " + e.getMessage());
             } catch (IOException e) {
@@ -81,21 +114,25 @@ public class RecursiveWalk {
         }
     }
 
+    /**
+     * Hashes all files in directories from input file.
+     * With {@code --dedup}, writes groups of files with equal content instead;
+     * files with equal hashes are compared byte by byte, so hash collisions are not reported as duplicates.
+     * With {@code --tree}, files are hashed by {@link TreeHasher}, which gives other digests.
+     * With {@code --watch}, after full pass directories are watched and delta lines
+     * are appended to output, see {@link DirectoryWatcher}.
+     * With {@code --stats SECONDS} or {@code --jmx}, {@link WalkStatistics} are printed to
+     * {@link System#err} periodically or registered in platform MBean server.
+     *
+     * @param args [--stats SECONDS] [--jmx] [--dedup | --watch] [--tree [--chunk-size N]] [--threads N] [--hash NAME] [--block-size N] [--map-threshold N] [--cache FILE] input_file_name output_file_name
+     */
     public static void main(String[] args) throws IOException {
         if (args == null) {
-            System.err.println("Arguments is null. You should use RecursiveWalk input_file_name output_file_name");
-            return;
-        }
-        if (args.length != 2) {
-            System.err.println("Wrong number of arguments");
-            return;
-        }
-        if (args[0] == null || args[1] == null) {
-            System.err.println("Arguments cannot be null");
+            System.err.println("Arguments is null. You should use RecursiveWalk [options] input_file_name output_file_name");
             return;
         }
         try {
-            run(args[0], args[1]);
+            run(WalkOptions.parse(args, VALUE_FLAGS, SWITCH_FLAGS));
         } catch (Exception e) {
             System.err.println(e.getMessage());
         }
@@ -0,0 +1,76 @@
+package ru.ifmo.rain.shaldin.walk;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compares {@link Walk} with and without {@code --schedule} on given list of files.
+ * Usage: {@code ScheduleBenchmark list_file [window]}.
+ * <p>
+ * Besides time, prints total inode distance between consecutive reads,
+ * which approximates seek distance. For meaningful timings, files should be on a spinning disk
+ * or loopback image of one (for example {@code mkfs.ext4 disk.img; mount -o loop disk.img /mnt}),
+ * and page cache should be dropped before every run ({@code echo 3 > /proc/sys/vm/drop_caches}),
+ * so benchmark asks to press Enter before each of two runs.
+ */
+public class ScheduleBenchmark {
+    private static final int DEFAULT_WINDOW = 4096;
+
+    private static long distance(List<long[]> positions) {
+        long distance = 0;
+        for (int i = 1; i < positions.size(); i++) {
+            distance += Math.abs(positions.get(i)[1] - positions.get(i - 1)[1]);
+        }
+        return distance;
+    }
+
+    private static long run(String list, String... flags) throws IOException {
+        System.out.println("Drop page cache and press Enter to run Walk " + String.join(" ", flags));
+        System.in.read();
+        Path output = Files.createTempFile("schedule-benchmark", ".txt");
+        try {
+            String[] args = Arrays.copyOf(flags, flags.length + 2);
+            args[flags.length] = list;
+            args[flags.length + 1] = output.toString();
+            long start = System.nanoTime();
+            Walk.main(args);
+            return (System.nanoTime() - start) / 1_000_000;
+        } finally {
+            Files.delete(output);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        String list = args[0];
+        int window = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_WINDOW;
+        List<long[]> positions = new ArrayList<>();
+        for (String name : Files.readAllLines(Paths.get(list), StandardCharsets.UTF_8)) {
+            long[] position = ScheduledHashWriter.diskPosition(name);
+            if (position != null) {
+                positions.add(position);
+            }
+        }
+        long inputDistance = distance(positions);
+        long scheduledDistance = 0;
+        long[] previous = null;
+        for (int from = 0; from < positions.size(); from += window) {
+            List<long[]> part = new ArrayList<>(positions.subList(from, Math.min(positions.size(), from + window)));
+            part.sort((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+            scheduledDistance += distance(part);
+            if (previous != null) {
+                scheduledDistance += Math.abs(part.get(0)[1] - previous[1]);
+            }
+            previous = part.get(part.size() - 1);
+        }
+        long inputTime = run(list);
+        long scheduledTime = run(list, "--schedule", Integer.toString(window));
+        System.out.printf("input order:     %8d ms, inode distance %d%n", inputTime, inputDistance);
+        System.out.printf("scheduled order: %8d ms, inode distance %d%n", scheduledTime, scheduledDistance);
+    }
+}
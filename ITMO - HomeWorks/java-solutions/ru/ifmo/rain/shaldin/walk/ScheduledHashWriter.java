@@ -0,0 +1,120 @@
+package ru.ifmo.rain.shaldin.walk;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * {@link HashWriter}, which reads files in on-disk order.
+ * Names are file paths. Windows of {@code window} files are collected, sorted by
+ * device and inode number, which follows allocation order on most file systems,
+ * hashed in that order and passed to delegate in the order they were added.
+ * If inode numbers are not supported, files are hashed in the order they were added.
+ */
+public class ScheduledHashWriter implements HashWriter {
+    private static class Entry {
+        private final String name;
+        private final HashTask task;
+        private long device = Long.MAX_VALUE;
+        private long inode = Long.MAX_VALUE;
+        private byte[] hash;
+        private IOException error;
+
+        Entry(String name, HashTask task) {
+            this.name = name;
+            this.task = task;
+        }
+    }
+
+    private static final Comparator<Entry> DISK_ORDER = Comparator
+            .<Entry>comparingLong(entry -> entry.device)
+            .thenComparingLong(entry -> entry.inode);
+
+    private final HashWriter delegate;
+    private final int window;
+    private final List<Entry> entries;
+
+    /**
+     * Constructor for {@link ScheduledHashWriter}
+     *
+     * @param delegate writer for hashed files
+     * @param window   amount of files, which are sorted together
+     */
+    public ScheduledHashWriter(HashWriter delegate, int window) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("Window must be positive.");
+        }
+        this.delegate = delegate;
+        this.window = window;
+        entries = new ArrayList<>(window);
+    }
+
+    /**
+     * Returns device and inode number of file or {@code null}, if they are unknown.
+     *
+     * @param name path to file
+     * @return pair of device and inode
+     */
+    static long[] diskPosition(String name) {
+        try {
+            Map<String, Object> attributes = Files.readAttributes(Paths.get(name), "unix:dev,ino");
+            return new long[]{(Long) attributes.get("dev"), (Long) attributes.get("ino")};
+        } catch (IOException | UnsupportedOperationException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void add(String name, HashTask task) throws IOException {
+        entries.add(new Entry(name, task));
+        if (entries.size() == window) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        List<Entry> order = new ArrayList<>(entries);
+        for (Entry entry : order) {
+            long[] position = diskPosition(entry.name);
+            if (position != null) {
+                entry.device = position[0];
+                entry.inode = position[1];
+            }
+        }
+        order.sort(DISK_ORDER);
+        for (Entry entry : order) {
+            try {
+                entry.hash = entry.task.hash();
+            } catch (IOException e) {
+                entry.error = e;
+            } catch (InvalidPathException e) {
+                entry.error = new IOException(e.getMessage());
+            }
+        }
+        for (Entry entry : entries) {
+            delegate.add(entry.name, () -> {
+                if (entry.error != null) {
+                    throw entry.error;
+                }
+                return entry.hash;
+            });
+        }
+        entries.clear();
+    }
+
+    /**
+     * Hashes and writes remaining files and closes delegate.
+     *
+     * @throws IOException if output cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            delegate.close();
+        }
+    }
+}
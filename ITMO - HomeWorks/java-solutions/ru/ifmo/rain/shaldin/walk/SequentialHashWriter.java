@@ -0,0 +1,33 @@
+package ru.ifmo.rain.shaldin.walk;
+
+import java.io.IOException;
+
+import static ru.ifmo.rain.shaldin.walk.WalkUtils.*;
+
+/**
+ * {@link HashWriter}, which hashes every file in the calling thread.
+ */
+public class SequentialHashWriter implements HashWriter {
+    private final HashSink output;
+    private final int hashLength;
+
+    /**
+     * Constructor for {@link SequentialHashWriter}
+     *
+     * @param output     output for result lines
+     * @param hashLength length of hash in bytes
+     */
+    public SequentialHashWriter(HashSink output, int hashLength) {
+        this.output = output;
+        this.hashLength = hashLength;
+    }
+
+    @Override
+    public void add(String name, HashTask task) throws IOException {
+        output.write(safeHash(task, hashLength), name);
+    }
+
+    @Override
+    public void close() {
+    }
+}
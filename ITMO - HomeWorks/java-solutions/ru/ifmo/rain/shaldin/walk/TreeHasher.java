@@ -0,0 +1,107 @@
+package ru.ifmo.rain.shaldin.walk;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Computes tree hash of files, which is not equal to plain hash of {@link FileHasher}.
+ * File is split into chunks of {@code chunkSize} bytes, which are hashed in parallel:
+ * {@code leaf = H(0x00 || chunk)}. Root hash is {@code H(0x01 || leaf_0 || ... || leaf_n-1)},
+ * where {@code H} is the {@link HashAlgorithm}. Empty file has no leaves.
+ * Chunks are hashed in own pool of threads, which is stopped by {@link #close()}.
+ */
+public class TreeHasher extends FileHasher {
+    public static final long DEFAULT_CHUNK_SIZE = 1L << 24;
+    private static final byte LEAF = 0;
+    private static final byte ROOT = 1;
+
+    private final long chunkSize;
+    private final ForkJoinPool pool;
+
+    /**
+     * Constructor for {@link TreeHasher}
+     *
+     * @param algorithm hash algorithm
+     * @param blockSize size of read buffer
+     * @param chunkSize size of chunk
+     * @param threads   amount of threads, which hash chunks
+     */
+    public TreeHasher(HashAlgorithm algorithm, int blockSize, long chunkSize, int threads) {
+        super(algorithm, blockSize, Long.MAX_VALUE);
+        if (chunkSize <= 0 || threads <= 0) {
+            throw new IllegalArgumentException("Chunk size and amount of threads must be positive.");
+        }
+        this.chunkSize = chunkSize;
+        pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Stops threads, which hash chunks. Chunks, which are already submitted, are hashed.
+     */
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    @Override
+    public String getName() {
+        return "tree-" + super.getName() + "-" + chunkSize;
+    }
+
+    /**
+     * Returns tree hash of file content.
+     *
+     * @param file file to hash
+     * @return root hash
+     * @throws IOException if file cannot be read
+     */
+    @Override
+    public byte[] hash(Path file) throws IOException {
+        long started = getStatistics() == null ? 0 : System.nanoTime();
+        try (FileChannel channel = open(file)) {
+            long size = channel.size();
+            List<Future<byte[]>> leaves = new ArrayList<>();
+            for (long from = 0; from < size; from += chunkSize) {
+                final long start = from;
+                final long end = Math.min(size, from + chunkSize);
+                leaves.add(pool.submit(() -> hashRange(channel, LEAF, start, end)));
+            }
+            List<byte[]> results = new ArrayList<>(leaves.size());
+            try {
+                for (Future<byte[]> leaf : leaves) {
+                    results.add(leaf.get());
+                }
+            } catch (InterruptedException e) {
+                leaves.forEach(leaf -> leaf.cancel(true));
+                throw new InterruptedIOException("Interrupted while hashing " + file);
+            } catch (ExecutionException e) {
+                leaves.forEach(leaf -> leaf.cancel(true));
+                throw e.getCause() instanceof IOException
+                        ? (IOException) e.getCause()
+                        : new IOException("Cannot hash " + file + ". " + e.getCause());
+            }
+            Context context = acquire();
+            try {
+                context.getDigest().update(ByteBuffer.wrap(new byte[]{ROOT}));
+                for (byte[] leaf : results) {
+                    context.getDigest().update(ByteBuffer.wrap(leaf));
+                }
+                return result(context);
+            } finally {
+                release(context);
+            }
+        } finally {
+            if (getStatistics() != null) {
+                getStatistics().recordFile(file, System.nanoTime() - started);
+            }
+        }
+    }
+}
@@ -3,53 +3,53 @@ package ru.ifmo.rain.shaldin.walk;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+
+import static ru.ifmo.rain.shaldin.walk.WalkUtils.*;
 
 public class Walk {
-    private static final int BUFFER_SIZE = 4096;
+    private static final List<String> VALUE_FLAGS = List.of("--virtual", "--schedule", "--hash", "--block-size", "--map-threshold", "--cache", "--chunk-size", "--stats");
+    private static final List<String> SWITCH_FLAGS = List.of("-0", "--tree", "--jmx");
 
-    private static int hash(FileInputStream fileInput) throws IOException {
-        if (fileInput == null) {
-            return 0;
-        }
-        int c = 0, hash = 0x811c9dc5;
-        byte[] BUFFER = new byte[BUFFER_SIZE];
-        while ((c = fileInput.read(BUFFER)) >= 0) {
-            for (int i = 0; i < c; i++) {
-                hash = (hash * 0x01000193) ^ (BUFFER[i] & 0xff);
+    private static HashWriter hashWriter(HashSink output, int hashLength, WalkOptions options) {
+        if (options.has("--schedule")) {
+            if (options.has("--virtual")) {
+                throw new IllegalArgumentException("Options --schedule and --virtual cannot be used together");
             }
+            return new ScheduledHashWriter(new SequentialHashWriter(output, hashLength), options.getInt("--schedule", 1));
         }
-        return hash;
+        if (options.has("--virtual")) {
+            return new ParallelHashWriter(output, hashLength,
+                    virtualThreadExecutor(Runtime.getRuntime().availableProcessors()), options.getInt("--virtual", 1));
+        }
+        return new SequentialHashWriter(output, hashLength);
     }
 
-    private static void run(String inputFileName, String outputFileName) throws IOException {
-        try {
-            Paths.get(outputFileName);
-        } catch (InvalidPathException e) {
-            throw new InvalidPathException("Invalid output path", e.getMessage());
-        }
-        try {
-            Paths.get(inputFileName);
-        } catch (InvalidPathException e) {
-            throw new InvalidPathException("Invalid input path", e.getMessage());
-        }
-        try {
-            if (Paths.get(outputFileName).getParent() != null) {
-                Files.createDirectories(Paths.get(outputFileName).getParent());
-            }
-        } catch (IOException e) {
-            throw new IOException("Cannot create directories for output file. " + e);
-        }
-        try (BufferedReader input = new BufferedReader(new FileReader(inputFileName, StandardCharsets.UTF_8))) {
-            try (BufferedWriter output = new BufferedWriter(new FileWriter(outputFileName, StandardCharsets.UTF_8))) {
+    // statistics is never referenced: try only closes it, which stops reporter and unregisters MBean
+    @SuppressWarnings("try")
+    private static void run(WalkOptions options) throws IOException {
+        String inputFileName = options.getInput();
+        String outputFileName = options.getOutput();
+        checkPaths(inputFileName, outputFileName);
+        boolean nul = options.has("-0");
+        try (FileHasher hasher = fileHasher(options);
+             BufferedReader input = nul ? null : new BufferedReader(new FileReader(inputFileName, StandardCharsets.UTF_8));
+             NulPathReader nulInput = nul ? new NulPathReader(Paths.get(inputFileName)) : null) {
+            try (HashCache cache = hashCache(options, hasher);
+                 HashSink output = new HashSink(Paths.get(outputFileName));
+                 WalkStatistics statistics = walkStatistics(options, hasher, output);
+                 HashWriter writer = hashWriter(output, hasher.getAlgorithm().getLength(), options)) {
                 String line;
-                while ((line = input.readLine()) != null) {
-                    int hash = 0;
-                    try (FileInputStream fileInput = new FileInputStream(line)) {
-                        hash = hash(fileInput);
-                    } catch (Exception ignore) {
-                    } finally {
-                        output.write(String.format("%08x", hash) + ' ' + line);
-                        output.newLine();
+                while ((line = nul ? nulInput.next() : input.readLine()) != null) {
+                    final String file = line;
+                    if (cache == null) {
+                        writer.add(file, () -> hasher.hash(Paths.get(file)));
+                    } else {
+                        writer.add(file, () -> {
+                            Path path = Paths.get(file);
+                            return cache.hash(path, Files.readAttributes(path, BasicFileAttributes.class), hasher);
+                        });
                     }
                 }
             } catch (FileNotFoundException e) {
@@ -64,21 +64,28 @@ public class Walk {
         }
     }
 
+    /**
+     * Hashes all files from input file.
+     * With {@code --virtual N}, every file is hashed in its own virtual thread,
+     * at most {@code N} files at once; lines are still written in input order.
+     * Virtual threads need Java 21; on older JVMs files are hashed in a fixed pool
+     * of one platform thread per processor, like {@code --threads} of {@link RecursiveWalk}.
+     * With {@code --schedule N}, windows of {@code N} files are read in on-disk order,
+     * see {@link ScheduledHashWriter}.
+     * With {@code -0}, input file contains NUL-delimited paths, see {@link NulPathReader}.
+     * With {@code --tree}, files are hashed by {@link TreeHasher}, which gives other digests.
+     * With {@code --stats SECONDS} or {@code --jmx}, {@link WalkStatistics} are printed to
+     * {@link System#err} periodically or registered in platform MBean server.
+     *
+     * @param args [-0] [--stats SECONDS] [--jmx] [--virtual N (Java 21+) | --schedule N] [--tree [--chunk-size N]] [--hash NAME] [--block-size N] [--map-threshold N] [--cache FILE] input_file_name output_file_name
+     */
     public static void main(String[] args) throws IOException {
         if (args == null) {
-            System.err.println("Arguments is null. You should use RecursiveWalk input_file_name output_file_name");
-            return;
-        }
-        if (args.length != 2) {
-            System.err.println("Wrong number of arguments");
-            return;
-        }
-        if (args[0] == null || args[1] == null) {
-            System.err.println("Arguments cannot be null");
+            System.err.println("Arguments is null. You should use Walk [options] input_file_name output_file_name");
             return;
         }
         try {
-            run(args[0], args[1]);
+            run(WalkOptions.parse(args, VALUE_FLAGS, SWITCH_FLAGS));
         } catch (Exception e) {
             System.err.println(e.getMessage());
         }
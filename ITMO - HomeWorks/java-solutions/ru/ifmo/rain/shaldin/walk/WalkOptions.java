@@ -0,0 +1,89 @@
+package ru.ifmo.rain.shaldin.walk;
+
+import java.util.*;
+
+/**
+ * Command line of walk tools: optional flags followed by input and output file names.
+ * Flags from {@code valueFlags} take one argument, flags from {@code switchFlags} take none.
+ */
+public class WalkOptions {
+    private final Map<String, String> flags = new HashMap<>();
+    private final String input;
+    private final String output;
+
+    private WalkOptions(Map<String, String> flags, String input, String output) {
+        this.flags.putAll(flags);
+        this.input = input;
+        this.output = output;
+    }
+
+    /**
+     * Parses command line.
+     *
+     * @param args        command line arguments
+     * @param valueFlags  supported flags with argument
+     * @param switchFlags supported flags without argument
+     * @return parsed options
+     * @throws IllegalArgumentException if command line is incorrect
+     */
+    public static WalkOptions parse(String[] args, List<String> valueFlags, List<String> switchFlags) {
+        Map<String, String> flags = new HashMap<>();
+        int pos = 0;
+        while (pos < args.length && args[pos] != null && args[pos].startsWith("-") && args.length - pos > 2) {
+            String flag = args[pos++];
+            if (valueFlags.contains(flag)) {
+                flags.put(flag, args[pos++]);
+            } else if (switchFlags.contains(flag)) {
+                flags.put(flag, "");
+            } else {
+                throw new IllegalArgumentException("Unknown option " + flag);
+            }
+        }
+        if (args.length - pos != 2) {
+            throw new IllegalArgumentException("Wrong number of arguments");
+        }
+        if (args[pos] == null || args[pos + 1] == null) {
+            throw new IllegalArgumentException("Arguments cannot be null");
+        }
+        return new WalkOptions(flags, args[pos], args[pos + 1]);
+    }
+
+    public String getInput() {
+        return input;
+    }
+
+    public String getOutput() {
+        return output;
+    }
+
+    public boolean has(String flag) {
+        return flags.containsKey(flag);
+    }
+
+    public String get(String flag, String defaultValue) {
+        return flags.getOrDefault(flag, defaultValue);
+    }
+
+    public long getLong(String flag, long defaultValue) {
+        String value = flags.get(flag);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            long result = Long.parseLong(value);
+            if (result > 0) {
+                return result;
+            }
+        } catch (NumberFormatException ignore) {
+        }
+        throw new IllegalArgumentException("Value of " + flag + " must be positive integer: " + value);
+    }
+
+    public int getInt(String flag, int defaultValue) {
+        long result = getLong(flag, defaultValue);
+        if (result > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Value of " + flag + " is too large: " + result);
+        }
+        return (int) result;
+    }
+}
@@ -0,0 +1,254 @@
+package ru.ifmo.rain.shaldin.walk;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throughput and latency statistics of walk run.
+ * Hashers and outputs collect statistics only if instance is given to them,
+ * so disabled statistics cost one {@code null} check per file or read.
+ */
+public class WalkStatistics implements WalkStatisticsMBean, Closeable {
+    private static final String OBJECT_NAME = "ru.ifmo.rain.shaldin.walk:type=WalkStatistics";
+    private static final int SLOWEST_DIRECTORIES = 10;
+    private static final int PENDING_DIRECTORIES = 1024;
+
+    /**
+     * Histogram with power of two buckets of nanoseconds.
+     */
+    private static class Histogram {
+        private final LongAdder[] buckets = new LongAdder[Long.SIZE];
+
+        Histogram() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long nanos) {
+            buckets[Long.SIZE - Long.numberOfLeadingZeros(Math.max(nanos, 0))].increment();
+        }
+
+        private long percentile(long[] counts, long total, double fraction) {
+            long rank = (long) Math.ceil(total * fraction);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank && counts[i] > 0) {
+                    return i == 0 ? 0 : 1L << i;
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public String toString() {
+            long[] counts = new long[buckets.length];
+            long total = 0;
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = buckets[i].sum();
+                total += counts[i];
+            }
+            if (total == 0) {
+                return "n/a";
+            }
+            return String.format("p50<%s p90<%s p99<%s max<%s",
+                    micros(percentile(counts, total, 0.5)),
+                    micros(percentile(counts, total, 0.9)),
+                    micros(percentile(counts, total, 0.99)),
+                    micros(percentile(counts, total, 1)));
+        }
+
+        private static String micros(long nanos) {
+            return String.format("%.1fus", nanos / 1000.0);
+        }
+    }
+
+    private final long start = System.nanoTime();
+    private final LongAdder files = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder writerNanos = new LongAdder();
+    private final Histogram openLatency = new Histogram();
+    private final Histogram readLatency = new Histogram();
+    /** Times of recently hashed directories, moved to {@link #slowest} when there are too many of them. Guarded by {@code this}. */
+    private final Map<Path, Long> directoryNanos = new HashMap<>();
+    /** Min-heap of at most {@link #SLOWEST_DIRECTORIES} slowest directories. */
+    private final PriorityQueue<Map.Entry<Path, Long>> slowest = new PriorityQueue<>(Map.Entry.comparingByValue());
+    private ScheduledExecutorService reporter;
+    private ObjectName name;
+
+    /**
+     * Registers statistics in platform MBean server.
+     *
+     * @throws JMException if statistics cannot be registered
+     */
+    public void register() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        name = new ObjectName(OBJECT_NAME);
+        server.registerMBean(this, name);
+    }
+
+    /**
+     * Prints {@link #getSummary() summary} to {@link System#err} periodically.
+     *
+     * @param seconds period of reports
+     */
+    public void startReporter(long seconds) {
+        reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "walk-statistics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(() -> System.err.println(getSummary()), seconds, seconds, TimeUnit.SECONDS);
+    }
+
+    public void recordOpen(long nanos) {
+        openLatency.record(nanos);
+    }
+
+    public void recordRead(long nanos, long count) {
+        readLatency.record(nanos);
+        bytes.add(Math.max(count, 0));
+    }
+
+    /**
+     * Records hashed file.
+     *
+     * @param file  hashed file
+     * @param nanos time of hashing including open
+     */
+    public void recordFile(Path file, long nanos) {
+        files.increment();
+        Path directory = file.getParent();
+        if (directory != null) {
+            recordDirectory(directory, nanos);
+        }
+    }
+
+    private synchronized void recordDirectory(Path directory, long nanos) {
+        directoryNanos.merge(directory, nanos, Long::sum);
+        if (directoryNanos.size() > PENDING_DIRECTORIES) {
+            flushDirectories();
+        }
+    }
+
+    /**
+     * Moves pending directories to heap of slowest ones.
+     * Directory, which files are hashed after it was moved, is summed with its entry in heap, if it is still there.
+     */
+    private synchronized void flushDirectories() {
+        Iterator<Map.Entry<Path, Long>> iterator = directoryNanos.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Path, Long> entry = iterator.next();
+            iterator.remove();
+            long nanos = entry.getValue();
+            for (Map.Entry<Path, Long> old : slowest) {
+                if (old.getKey().equals(entry.getKey())) {
+                    slowest.remove(old);
+                    nanos += old.getValue();
+                    break;
+                }
+            }
+            if (slowest.size() < SLOWEST_DIRECTORIES) {
+                slowest.add(Map.entry(entry.getKey(), nanos));
+            } else if (slowest.peek().getValue() < nanos) {
+                slowest.poll();
+                slowest.add(Map.entry(entry.getKey(), nanos));
+            }
+        }
+    }
+
+    public void recordWrite(long nanos) {
+        writerNanos.add(nanos);
+    }
+
+    private double seconds() {
+        return Math.max(System.nanoTime() - start, 1) / 1e9;
+    }
+
+    @Override
+    public long getFiles() {
+        return files.sum();
+    }
+
+    @Override
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    @Override
+    public double getFilesPerSecond() {
+        return getFiles() / seconds();
+    }
+
+    @Override
+    public double getBytesPerSecond() {
+        return getBytes() / seconds();
+    }
+
+    @Override
+    public String getOpenLatency() {
+        return openLatency.toString();
+    }
+
+    @Override
+    public String getReadLatency() {
+        return readLatency.toString();
+    }
+
+    @Override
+    public synchronized String[] getSlowestDirectories() {
+        Map<Path, Long> totals = new HashMap<>();
+        for (Map.Entry<Path, Long> entry : slowest) {
+            totals.put(entry.getKey(), entry.getValue());
+        }
+        directoryNanos.forEach((directory, nanos) -> totals.merge(directory, nanos, Long::sum));
+        return totals.entrySet().stream()
+                .sorted(Map.Entry.<Path, Long>comparingByValue().reversed())
+                .limit(SLOWEST_DIRECTORIES)
+                .map(entry -> String.format("%d ms %s", entry.getValue() / 1_000_000, entry.getKey()))
+                .toArray(String[]::new);
+    }
+
+    @Override
+    public long getWriterMillis() {
+        return writerNanos.sum() / 1_000_000;
+    }
+
+    @Override
+    public String getSummary() {
+        return String.format("files: %d (%.1f/s), bytes: %d (%.1f MB/s), open: %s, read: %s, writer: %d ms, slowest: %s",
+                getFiles(), getFilesPerSecond(),
+                getBytes(), getBytesPerSecond() / (1 << 20),
+                getOpenLatency(), getReadLatency(),
+                getWriterMillis(),
+                String.join("; ", getSlowestDirectories()));
+    }
+
+    /**
+     * Stops reporter and unregisters statistics.
+     */
+    @Override
+    public void close() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            System.err.println(getSummary());
+        }
+        if (name != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+            } catch (JMException ignore) {
+            }
+        }
+    }
+}
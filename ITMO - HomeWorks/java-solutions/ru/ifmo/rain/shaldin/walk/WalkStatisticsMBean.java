@@ -0,0 +1,36 @@
+package ru.ifmo.rain.shaldin.walk;
+
+/**
+ * JMX view of {@link WalkStatistics}.
+ */
+public interface WalkStatisticsMBean {
+    long getFiles();
+
+    long getBytes();
+
+    double getFilesPerSecond();
+
+    double getBytesPerSecond();
+
+    /**
+     * Returns percentiles of time spent in opening files.
+     */
+    String getOpenLatency();
+
+    /**
+     * Returns percentiles of time spent in single reads.
+     */
+    String getReadLatency();
+
+    /**
+     * Returns directories with the largest total hashing time.
+     */
+    String[] getSlowestDirectories();
+
+    long getWriterMillis();
+
+    /**
+     * Returns one line summary of all statistics.
+     */
+    String getSummary();
+}
@@ -0,0 +1,124 @@
+package ru.ifmo.rain.shaldin.walk;
+
+import javax.management.JMException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class WalkUtils {
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    protected static void printError(String message) {
+        System.err.println(message);
+    }
+
+    protected static void checkPaths(String inputFileName, String outputFileName) throws IOException {
+        try {
+            Paths.get(outputFileName);
+        } catch (InvalidPathException e) {
+            throw new InvalidPathException("Invalid output path", e.getMessage());
+        }
+        try {
+            Paths.get(inputFileName);
+        } catch (InvalidPathException e) {
+            throw new InvalidPathException("Invalid input path", e.getMessage());
+        }
+        try {
+            Path parent = Paths.get(outputFileName).getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+        } catch (IOException e) {
+            throw new IOException("Cannot create directories for output file. " + e);
+        }
+    }
+
+    protected static byte[] safeHash(HashWriter.HashTask task, int hashLength) {
+        try {
+            return task.hash();
+        } catch (IOException | InvalidPathException e) {
+            return new byte[hashLength];
+        }
+    }
+
+    protected static String toHex(byte[] hash) {
+        char[] result = new char[2 * hash.length];
+        for (int i = 0; i < hash.length; i++) {
+            result[2 * i] = HEX_DIGITS[(hash[i] >> 4) & 0xf];
+            result[2 * i + 1] = HEX_DIGITS[hash[i] & 0xf];
+        }
+        return new String(result);
+    }
+
+    protected static FileHasher fileHasher(WalkOptions options) {
+        HashAlgorithm algorithm = HashAlgorithm.forName(options.get("--hash", HashAlgorithm.DEFAULT.getName()));
+        int blockSize = options.getInt("--block-size", FileHasher.DEFAULT_BLOCK_SIZE);
+        if (options.has("--tree")) {
+            return new TreeHasher(algorithm, blockSize,
+                    options.getLong("--chunk-size", TreeHasher.DEFAULT_CHUNK_SIZE),
+                    options.getInt("--threads", Runtime.getRuntime().availableProcessors()));
+        }
+        return new FileHasher(algorithm, blockSize, options.getLong("--map-threshold", FileHasher.DEFAULT_MAP_THRESHOLD));
+    }
+
+    /**
+     * Creates statistics, if {@code --stats SECONDS} or {@code --jmx} is given, and attaches it to hasher and output.
+     */
+    protected static WalkStatistics walkStatistics(WalkOptions options, FileHasher hasher, HashSink output) {
+        if (!options.has("--stats") && !options.has("--jmx")) {
+            return null;
+        }
+        WalkStatistics statistics = new WalkStatistics();
+        if (options.has("--jmx")) {
+            try {
+                statistics.register();
+            } catch (JMException e) {
+                printError("Cannot register statistics MBean. " + e.getMessage());
+            }
+        }
+        if (options.has("--stats")) {
+            statistics.startReporter(options.getLong("--stats", 1));
+        }
+        hasher.setStatistics(statistics);
+        output.setStatistics(statistics);
+        return statistics;
+    }
+
+    protected static HashCache hashCache(WalkOptions options, FileHasher hasher) throws IOException {
+        String file = options.get("--cache", null);
+        if (file == null) {
+            return null;
+        }
+        try {
+            return new HashCache(Paths.get(file), hasher);
+        } catch (InvalidPathException e) {
+            throw new InvalidPathException("Invalid cache path", e.getMessage());
+        } catch (IOException e) {
+            throw new IOException("Cannot read cache file. " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns executor, which starts virtual thread per task.
+     * Virtual threads need Java 21; on older JVMs it is a fixed pool of {@code threads} platform threads.
+     *
+     * @param threads size of fallback pool
+     */
+    protected static ExecutorService virtualThreadExecutor(int threads) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(threads);
+        }
+    }
+
+    protected static HashWriter hashWriter(HashSink output, int hashLength, int threads) {
+        return threads == 1
+                ? new SequentialHashWriter(output, hashLength)
+                : new ParallelHashWriter(output, hashLength, threads);
+    }
+}
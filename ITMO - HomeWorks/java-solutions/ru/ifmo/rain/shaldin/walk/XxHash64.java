@@ -0,0 +1,126 @@
+package ru.ifmo.rain.shaldin.walk;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * xxHash64 with zero seed. Input is consumed by 32-byte stripes of four little-endian {@code long}s.
+ */
+public class XxHash64 implements HashAlgorithm {
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+    private static final int STRIPE = 32;
+
+    @Override
+    public String getName() {
+        return "xxhash64";
+    }
+
+    @Override
+    public int getLength() {
+        return Long.BYTES;
+    }
+
+    private static long round(long acc, long input) {
+        return Long.rotateLeft(acc + input * PRIME2, 31) * PRIME1;
+    }
+
+    private static long merge(long acc, long value) {
+        return (acc ^ round(0, value)) * PRIME1 + PRIME4;
+    }
+
+    @Override
+    public Digest newDigest() {
+        return new Digest() {
+            private final ByteBuffer tail = ByteBuffer.allocate(STRIPE).order(ByteOrder.LITTLE_ENDIAN);
+            private long v1, v2, v3, v4;
+            private long total;
+
+            {
+                reset();
+            }
+
+            @Override
+            public void reset() {
+                v1 = PRIME1 + PRIME2;
+                v2 = PRIME2;
+                v3 = 0;
+                v4 = -PRIME1;
+                total = 0;
+                tail.clear();
+            }
+
+            private void stripes(ByteBuffer buffer, int from, int to) {
+                long a = v1, b = v2, c = v3, d = v4;
+                for (int i = from; i < to; i += STRIPE) {
+                    a = round(a, buffer.getLong(i));
+                    b = round(b, buffer.getLong(i + 8));
+                    c = round(c, buffer.getLong(i + 16));
+                    d = round(d, buffer.getLong(i + 24));
+                }
+                v1 = a;
+                v2 = b;
+                v3 = c;
+                v4 = d;
+            }
+
+            @Override
+            public void update(ByteBuffer buffer) {
+                total += buffer.remaining();
+                if (tail.position() > 0) {
+                    while (tail.hasRemaining() && buffer.hasRemaining()) {
+                        tail.put(buffer.get());
+                    }
+                    if (tail.hasRemaining()) {
+                        return;
+                    }
+                    stripes(tail, 0, STRIPE);
+                    tail.clear();
+                }
+                ByteBuffer input = buffer.order() == ByteOrder.LITTLE_ENDIAN
+                        ? buffer : buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+                int from = buffer.position();
+                int to = from + (buffer.remaining() / STRIPE) * STRIPE;
+                stripes(input, from, to);
+                buffer.position(to);
+                tail.put(buffer);
+            }
+
+            @Override
+            public void digest(byte[] result) {
+                long h;
+                if (total >= STRIPE) {
+                    h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+                    h = merge(h, v1);
+                    h = merge(h, v2);
+                    h = merge(h, v3);
+                    h = merge(h, v4);
+                } else {
+                    h = PRIME5;
+                }
+                h += total;
+                int i = 0;
+                int end = tail.position();
+                for (; i + Long.BYTES <= end; i += Long.BYTES) {
+                    h = Long.rotateLeft(h ^ round(0, tail.getLong(i)), 27) * PRIME1 + PRIME4;
+                }
+                if (i + Integer.BYTES <= end) {
+                    h = Long.rotateLeft(h ^ (tail.getInt(i) & 0xffffffffL) * PRIME1, 23) * PRIME2 + PRIME3;
+                    i += Integer.BYTES;
+                }
+                for (; i < end; i++) {
+                    h = Long.rotateLeft(h ^ (tail.get(i) & 0xff) * PRIME5, 11) * PRIME1;
+                }
+                h ^= h >>> 33;
+                h *= PRIME2;
+                h ^= h >>> 29;
+                h *= PRIME3;
+                h ^= h >>> 32;
+                ByteBuffer.wrap(result).putLong(h);
+            }
+        };
+    }
+}